@@ -0,0 +1,68 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import me.ryan.vertx.wiki.database.SqlQuery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+
+    static <T> T await(Consumer<Promise<T>> operation) throws Exception {
+        Promise<T> promise = Promise.promise();
+        operation.accept(promise);
+        return await(promise.future());
+    }
+
+    static String deploy(Vertx vertx, Verticle verticle, JsonObject config) throws Exception {
+        return await(vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config)));
+    }
+
+    /**
+     * Markdown of roughly {@code sizeKb} kilobytes mixing headings, emphasis, lists and links.
+     */
+    static String markdown(int sizeKb) {
+        StringBuilder markdown = new StringBuilder();
+        int section = 0;
+        while (markdown.length() < sizeKb * 1024) {
+            markdown.append("## Section ").append(section++).append("\n\n")
+                    .append("Some _emphasised_ text with **strong** words and a [link](http://example.com/")
+                    .append(section).append(").\n\n")
+                    .append("* first item\n* second item\n* third item\n\n")
+                    .append("    code block line\n\n");
+        }
+        return markdown.toString();
+    }
+
+    /**
+     * Loads db-queries.properties the same way WikiDatabaseVerticle does, for services built directly.
+     */
+    static HashMap<SqlQuery, String> sqlQueries() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = BenchmarkSupport.class.getResourceAsStream("/db-queries.properties")) {
+            properties.load(in);
+        }
+        HashMap<SqlQuery, String> queries = new HashMap<>();
+        for (SqlQuery query : SqlQuery.values()) {
+            queries.put(query, properties.getProperty(query.name().toLowerCase(Locale.ROOT).replace('_', '-')));
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,115 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.jdbcclient.JDBCPool;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Page reads through the event-bus proxy against an HSQLDB file database storing page content as
+ * text or compressed, with the default 32 KB unit of large object storage or 1 KB units. The size
+ * of the database files once the pages are written is printed at the start of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentCompressionBenchmark {
+
+    private static final int PAGES = 1000;
+
+    @Param({WikiDatabaseVerticle.CONTENT_COMPRESSION_NONE, WikiDatabaseVerticle.CONTENT_COMPRESSION_DEFLATE})
+    String compression;
+
+    @Param({"1", "16"})
+    int pageSizeKb;
+
+    @Param({"32", "1"})
+    int lobScaleKb;
+
+    private Vertx vertx;
+    private Path directory;
+    private JDBCPool pool;
+    private WikiDatabaseService service;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        directory = Files.createTempDirectory("wiki-compression");
+        String url = "jdbc:hsqldb:file:" + directory.resolve("wiki") + ";hsqldb.lob_file_scale=" + lobScaleKb;
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, url)
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 8)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_CONTENT_COMPRESSION, compression));
+        service = new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+
+        String markdown = BenchmarkSupport.markdown(pageSizeKb);
+        for (int i = 0; i < PAGES; i++) {
+            int n = i;
+            BenchmarkSupport.<Void>await(promise -> service.createPage("Page " + n, "# Page " + n + "\n\n" + markdown, promise));
+        }
+
+        pool = JDBCPool.pool(vertx, new JsonObject()
+                .put("url", url)
+                .put("driver_class", DEFAULT_WIKIDB_JDBC_DRIVER_CLASS)
+                .put("max_pool_size", 1));
+        BenchmarkSupport.await(pool.query("checkpoint").execute());
+        System.out.printf("%nDatabase files with %s content of %d KB pages in %d KB units: %d KB%n",
+                compression, pageSizeKb, lobScaleKb, size(directory) / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.await(pool.query("shutdown").execute());
+        BenchmarkSupport.await(vertx.close());
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    @Benchmark
+    public JsonObject fetchPageById() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(PAGES);
+        return BenchmarkSupport.await(promise -> service.fetchPageById(id, promise));
+    }
+
+    @Benchmark
+    public JsonArray fetchPageSummaries() throws Exception {
+        int afterId = ThreadLocalRandom.current().nextInt(PAGES - 100);
+        return BenchmarkSupport.await(promise -> service.fetchPageSummaries(afterId, 100, promise));
+    }
+}
@@ -0,0 +1,109 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Page reads through the event-bus proxy with {@link #CONCURRENCY} requests in flight, against the
+ * JDBC backend (in-memory HSQLDB) and the reactive PostgreSQL backend. PostgreSQL is started
+ * embedded unless {@code -Dwikidb.pg.host} points to a running server, in which case the
+ * {@code wikidb.pg.*} system properties are used to connect.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class DatabaseLoadBenchmark {
+
+    static final int CONCURRENCY = 256;
+    private static final int PAGES = 1000;
+
+    @Param({BACKEND_JDBC, BACKEND_PG})
+    String backend;
+
+    private Vertx vertx;
+    private EmbeddedPostgres postgres;
+    private WikiDatabaseService service;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        JsonObject config = new JsonObject().put(CONFIG_WIKIDB_BACKEND, backend);
+        if (BACKEND_PG.equals(backend)) {
+            if (System.getProperty(CONFIG_WIKIDB_PG_HOST) != null) {
+                config.put(CONFIG_WIKIDB_PG_HOST, System.getProperty(CONFIG_WIKIDB_PG_HOST))
+                        .put(CONFIG_WIKIDB_PG_PORT, Integer.getInteger(CONFIG_WIKIDB_PG_PORT, DEFAULT_WIKIDB_PG_PORT))
+                        .put(CONFIG_WIKIDB_PG_DATABASE, System.getProperty(CONFIG_WIKIDB_PG_DATABASE, DEFAULT_WIKIDB_PG_DATABASE))
+                        .put(CONFIG_WIKIDB_PG_USER, System.getProperty(CONFIG_WIKIDB_PG_USER, DEFAULT_WIKIDB_PG_USER))
+                        .put(CONFIG_WIKIDB_PG_PASSWORD, System.getProperty(CONFIG_WIKIDB_PG_PASSWORD, DEFAULT_WIKIDB_PG_PASSWORD));
+            } else {
+                postgres = EmbeddedPostgres.start();
+                config.put(CONFIG_WIKIDB_PG_PORT, postgres.getPort())
+                        .put(CONFIG_WIKIDB_PG_DATABASE, "postgres")
+                        .put(CONFIG_WIKIDB_PG_USER, "postgres")
+                        .put(CONFIG_WIKIDB_PG_PASSWORD, "postgres");
+            }
+        } else {
+            config.put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:bench-load-" + System.nanoTime() + ";shutdown=true");
+        }
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), config);
+        service = new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+
+        String markdown = BenchmarkSupport.markdown(4);
+        for (int i = 0; i < PAGES; i++) {
+            int n = i;
+            BenchmarkSupport.<Void>await(promise -> service.createPage("Page " + n, markdown, promise));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.await(vertx.close());
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public CompositeFuture fetchPageById() throws Exception {
+        List<Future> requests = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            int id = ThreadLocalRandom.current().nextInt(PAGES) + 1;
+            Promise<JsonObject> promise = Promise.promise();
+            service.fetchPageById(id, promise);
+            requests.add(promise.future());
+        }
+        return BenchmarkSupport.await(CompositeFuture.all(requests));
+    }
+}
@@ -0,0 +1,112 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.jdbcclient.JDBCPool;
+import me.ryan.vertx.wiki.database.SqlQuery;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * WikiDatabaseServiceImpl operations against an in-memory HSQLDB, called either directly on the
+ * service context or through the generated event-bus proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseServiceBenchmark {
+
+    private static final int PAGES = 1000;
+
+    @Param({"1", "16"})
+    int pageSizeKb;
+
+    private Vertx vertx;
+    private Context directContext;
+    private WikiDatabaseService direct;
+    private WikiDatabaseService proxy;
+    private String markdown;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        String url = "jdbc:hsqldb:mem:bench-db-" + System.nanoTime() + ";shutdown=true";
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, url)
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 8));
+        proxy = new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+
+        directContext = vertx.getOrCreateContext();
+        JDBCPool pool = JDBCPool.pool(vertx, new JsonObject()
+                .put("url", url)
+                .put("driver_class", DEFAULT_WIKIDB_JDBC_DRIVER_CLASS)
+                .put("max_pool_size", 8));
+        HashMap<SqlQuery, String> sqlQueries = BenchmarkSupport.sqlQueries();
+        direct = BenchmarkSupport.<WikiDatabaseService>await(promise ->
+                directContext.runOnContext(v -> WikiDatabaseService.create(vertx, pool, sqlQueries, promise)));
+
+        markdown = BenchmarkSupport.markdown(pageSizeKb);
+        for (int i = 0; i < PAGES; i++) {
+            int n = i;
+            BenchmarkSupport.<Void>await(promise -> proxy.createPage("Page " + n, markdown, promise));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.await(vertx.close());
+    }
+
+    @Benchmark
+    public JsonObject fetchPageByIdDirect() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(PAGES);
+        return BenchmarkSupport.await(promise -> directContext.runOnContext(v -> direct.fetchPageById(id, promise)));
+    }
+
+    @Benchmark
+    public JsonObject fetchPageByIdProxy() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(PAGES);
+        return BenchmarkSupport.await(promise -> proxy.fetchPageById(id, promise));
+    }
+
+    @Benchmark
+    public Void savePageProxy() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(PAGES);
+        return BenchmarkSupport.await(promise -> proxy.savePage(id, markdown, promise));
+    }
+
+    @Benchmark
+    public JsonArray fetchAllPagesProxy() throws Exception {
+        return BenchmarkSupport.await(promise -> proxy.fetchAllPages(promise));
+    }
+
+    @Benchmark
+    public JsonArray searchPagesProxy() throws Exception {
+        return BenchmarkSupport.await(promise -> proxy.searchPages("emphasised link", 20, promise));
+    }
+}
@@ -0,0 +1,106 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.http.HttpServerVerticle;
+import me.ryan.vertx.wiki.http.MarkdownRenderVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * End-to-end GET /api/pages/:id throughput, driven by a local WebClient keeping
+ * {@link #CONCURRENCY} requests in flight, for a number of HTTP server verticle instances. Scaling
+ * with {@code instances} is bounded by the cores left over for the client and the database verticle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class HttpApiBenchmark {
+
+    static final int CONCURRENCY = 32;
+    private static final int PAGES = 200;
+    private static final int PORT = 18080;
+
+    @Param({"1", "2", "4"})
+    public int instances;
+
+    private Vertx vertx;
+    private WebClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:bench-http-" + System.nanoTime() + ";shutdown=true"));
+        BenchmarkSupport.deploy(vertx, new MarkdownRenderVerticle(), new JsonObject());
+        BenchmarkSupport.await(vertx.deployVerticle(HttpServerVerticle.class.getName(), new DeploymentOptions()
+                .setInstances(instances)
+                .setConfig(new JsonObject().put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT))));
+
+        WikiDatabaseService service = new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+        String markdown = BenchmarkSupport.markdown(8);
+        for (int i = 0; i < PAGES; i++) {
+            int n = i;
+            BenchmarkSupport.<Void>await(promise -> service.createPage("Page " + n, markdown, promise));
+        }
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultPort(PORT)
+                .setMaxPoolSize(CONCURRENCY)
+                .setKeepAlive(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        BenchmarkSupport.await(vertx.close());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public CompositeFuture getPage() throws Exception {
+        List<Future> requests = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            int id = ThreadLocalRandom.current().nextInt(PAGES);
+            Future<HttpResponse<Buffer>> request = client.get("/api/pages/" + id).send();
+            requests.add(request.map(response -> {
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Unexpected status " + response.statusCode());
+                }
+                return response;
+            }));
+        }
+        return BenchmarkSupport.await(CompositeFuture.all(requests));
+    }
+}
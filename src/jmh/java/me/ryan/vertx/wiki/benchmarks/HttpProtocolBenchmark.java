@@ -0,0 +1,119 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.http.HttpServerVerticle;
+import me.ryan.vertx.wiki.http.MarkdownRenderVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Page views of the single page application over TLS, each issuing the listing and page requests
+ * the browser sends in parallel, {@link #VIEWS} views at a time. {@code HTTP_1_1} spreads them over
+ * {@link #BROWSER_CONNECTIONS} connections, as browsers do per origin, while {@code HTTP_2}
+ * multiplexes them over one connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class HttpProtocolBenchmark {
+
+    static final int VIEWS = 16;
+    private static final int BROWSER_CONNECTIONS = 6;
+    private static final int PAGES = 200;
+    private static final int PORT = 18443;
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    public HttpVersion protocol;
+
+    private Vertx vertx;
+    private WebClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:bench-protocol-" + System.nanoTime() + ";shutdown=true"));
+        BenchmarkSupport.deploy(vertx, new MarkdownRenderVerticle(), new JsonObject());
+        BenchmarkSupport.deploy(vertx, new HttpServerVerticle(), new JsonObject()
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT)
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_SSL, true));
+
+        WikiDatabaseService service = new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+        String markdown = BenchmarkSupport.markdown(8);
+        for (int i = 0; i < PAGES; i++) {
+            int n = i;
+            BenchmarkSupport.<Void>await(promise -> service.createPage("Page " + n, markdown, promise));
+        }
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultPort(PORT)
+                .setSsl(true)
+                .setTrustAll(true)
+                .setVerifyHost(false)
+                .setUseAlpn(true)
+                .setProtocolVersion(protocol)
+                .setMaxPoolSize(BROWSER_CONNECTIONS)
+                .setHttp2MaxPoolSize(1)
+                .setHttp2MultiplexingLimit(2 * VIEWS)
+                .setKeepAlive(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        BenchmarkSupport.await(vertx.close());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VIEWS)
+    public CompositeFuture viewPage() throws Exception {
+        List<Future> requests = new ArrayList<>(2 * VIEWS);
+        for (int i = 0; i < VIEWS; i++) {
+            int id = ThreadLocalRandom.current().nextInt(PAGES);
+            requests.add(ok(client.get("/api/pages").send()));
+            requests.add(ok(client.get("/api/pages/" + id).send()));
+        }
+        return BenchmarkSupport.await(CompositeFuture.all(requests));
+    }
+
+    private Future<HttpResponse<Buffer>> ok(Future<HttpResponse<Buffer>> request) {
+        return request.map(response -> {
+            if (response.statusCode() != 200 || response.version() != protocol) {
+                throw new IllegalStateException("Unexpected " + response.version() + " status " + response.statusCode());
+            }
+            return response;
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import com.github.rjeschke.txtmark.Processor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkdownRenderBenchmark {
+
+    @Param({"1", "16", "256"})
+    int sizeKb;
+
+    private String markdown;
+
+    @Setup
+    public void setup() {
+        markdown = BenchmarkSupport.markdown(sizeKb);
+    }
+
+    @Benchmark
+    public String render() {
+        return Processor.process(markdown);
+    }
+}
@@ -0,0 +1,86 @@
+package me.ryan.vertx.wiki.benchmarks;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import me.ryan.vertx.wiki.database.WikiDatabaseServiceVertxEBProxy;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Event-bus proxy calls with payloads passed by reference through the local JSON codec, against
+ * the default codecs, which copy every JSON request and reply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceProxyCodecBenchmark {
+
+    private static final int PAGES = 500;
+
+    @Param({"true", "false"})
+    boolean localCodec;
+
+    @Param({"1", "64"})
+    int pageSizeKb;
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        BenchmarkSupport.deploy(vertx, new WikiDatabaseVerticle(), new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:bench-codec-" + System.nanoTime() + ";shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_LOCAL_CODEC, localCodec));
+        service = localCodec
+                ? me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE)
+                : new WikiDatabaseService(new WikiDatabaseServiceVertxEBProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE));
+
+        String markdown = BenchmarkSupport.markdown(pageSizeKb);
+        for (int i = 0; i < PAGES; i++) {
+            service.rxCreatePage("Page " + i, markdown).blockingAwait();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.await(vertx.close());
+    }
+
+    @Benchmark
+    public JsonObject fetchPageById() {
+        return service.rxFetchPageById(ThreadLocalRandom.current().nextInt(PAGES)).blockingGet();
+    }
+
+    @Benchmark
+    public JsonArray fetchPageSummaries() {
+        return service.rxFetchPageSummaries(-1, PAGES).blockingGet();
+    }
+
+    @Benchmark
+    public JsonArray searchPages() {
+        return service.rxSearchPages("section emphasised", 20).blockingGet();
+    }
+}
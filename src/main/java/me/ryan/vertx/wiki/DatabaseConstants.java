@@ -2,11 +2,34 @@ package me.ryan.vertx.wiki;
 
 public interface DatabaseConstants {
 
+    String CONFIG_WIKIDB_BACKEND = "wikidb.backend";
+    String BACKEND_JDBC = "jdbc";
+    String BACKEND_PG = "pg";
+
     String CONFIG_WIKIDB_JDBC_URL = "wikidb.jdbc.url";
     String CONFIG_WIKIDB_JDBC_DRIVER_CLASS = "wikidb.jdbc.driver_class";
     String CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE = "wikidb.jdbc.max_pool_size";
+    String CONFIG_WIKIDB_JDBC_MAX_STATEMENTS_PER_CONNECTION = "wikidb.jdbc.max_statements_per_connection";
+    String CONFIG_WIKIDB_JDBC_REPLICA_URLS = "wikidb.jdbc.replica_urls";
 
     String DEFAULT_WIKIDB_JDBC_URL = "jdbc:hsqldb:file:db/wiki";
     String DEFAULT_WIKIDB_JDBC_DRIVER_CLASS = "org.hsqldb.jdbcDriver";
     int DEFAULT_JDBC_MAX_POOL_SIZE = 30;
+    int DEFAULT_JDBC_MAX_STATEMENTS_PER_CONNECTION = 64;
+
+    String CONFIG_WIKIDB_PG_HOST = "wikidb.pg.host";
+    String CONFIG_WIKIDB_PG_PORT = "wikidb.pg.port";
+    String CONFIG_WIKIDB_PG_DATABASE = "wikidb.pg.database";
+    String CONFIG_WIKIDB_PG_USER = "wikidb.pg.user";
+    String CONFIG_WIKIDB_PG_PASSWORD = "wikidb.pg.password";
+    String CONFIG_WIKIDB_PG_MAX_POOL_SIZE = "wikidb.pg.max_pool_size";
+    String CONFIG_WIKIDB_PG_PIPELINING_LIMIT = "wikidb.pg.pipelining_limit";
+
+    String DEFAULT_WIKIDB_PG_HOST = "localhost";
+    int DEFAULT_WIKIDB_PG_PORT = 5432;
+    String DEFAULT_WIKIDB_PG_DATABASE = "wiki";
+    String DEFAULT_WIKIDB_PG_USER = "wiki";
+    String DEFAULT_WIKIDB_PG_PASSWORD = "wiki";
+    int DEFAULT_PG_MAX_POOL_SIZE = 8;
+    int DEFAULT_PG_PIPELINING_LIMIT = 256;
 }
@@ -1,20 +1,63 @@
 package me.ryan.vertx.wiki;
 
-import io.reactivex.Single;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Promise;
 import io.vertx.reactivex.core.AbstractVerticle;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.http.HttpServerVerticle;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
+
+    /**
+     * Deploys the verticles behind the HTTP server side by side, as none of them calls another
+     * while starting, then the HTTP server verticles, which warm up and listen once the services
+     * they call are there. The time each phase took is kept as the {@code startup_seconds} gauge.
+     */
     @Override
     public void start(Promise<Void> promise) {
+        long started = System.nanoTime();
+
+        DeploymentOptions options = new DeploymentOptions().setConfig(config());
+        // one HTTP server verticle per event loop by default; they share the listening socket
+        int httpInstances = config().getInteger(HttpServerVerticle.CONFIG_HTTP_SERVER_INSTANCES,
+                Runtime.getRuntime().availableProcessors());
 
-        Single<String> dbVerticleDeployment = vertx.rxDeployVerticle("me.ryan.vertx.wiki.database.WikiDatabaseVerticle");
+        // one database verticle per shard, each told which shard it serves
+        int shards = config().getInteger(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARDS, 1);
+        Completable dbVerticleDeployment = Flowable.range(0, shards)
+                .flatMapCompletable(shard -> vertx.rxDeployVerticle("me.ryan.vertx.wiki.database.WikiDatabaseVerticle",
+                        new DeploymentOptions().setConfig(config().copy().put(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARD, shard)))
+                        .ignoreElement());
+
+        long[] servicesReady = new long[1];
+        Completable.mergeArray(
+                dbVerticleDeployment,
+                vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.MarkdownRenderVerticle", options).ignoreElement(),
+                vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.PageUpdatesVerticle", options).ignoreElement(),
+                vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.AuthInitializerVerticle", options).ignoreElement())
+                .doOnComplete(() -> servicesReady[0] = System.nanoTime())
+                .andThen(vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.HttpServerVerticle",
+                        new DeploymentOptions(options).setInstances(httpInstances)))
+                .subscribe(id -> {
+                    long ready = System.nanoTime();
+                    MetricsRegistry metrics = MetricsRegistry.get(vertx.getDelegate());
+                    gauge(metrics, "services", servicesReady[0] - started);
+                    gauge(metrics, "http", ready - servicesReady[0]);
+                    gauge(metrics, "total", ready - started);
+                    LOGGER.info("Started in " + (ready - started) / 1_000_000 + " ms");
+                    promise.complete();
+                }, promise::fail);
+    }
 
-        dbVerticleDeployment
-                .flatMap(id -> vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.HttpServerVerticle", new DeploymentOptions().setInstances(2)))
-                .flatMap(id -> vertx.rxDeployVerticle("me.ryan.vertx.wiki.http.AuthInitializerVerticle"))
-                .subscribe(id -> promise.complete(), promise::fail);
+    private static void gauge(MetricsRegistry metrics, String phase, long nanos) {
+        double seconds = nanos / 1e9;
+        metrics.gauge("startup_seconds", "Time taken by each phase of the startup", () -> seconds, "phase", phase);
     }
-}
\ No newline at end of file
+}
@@ -3,5 +3,7 @@ package me.ryan.vertx.wiki.database;
 public enum ErrorCodes {
     NO_ACTION_SPECIFIED,
     BAD_ACTION,
-    DB_ERROR
+    DB_ERROR,
+    PAGE_CONFLICT,
+    PAGE_NOT_FOUND
 }
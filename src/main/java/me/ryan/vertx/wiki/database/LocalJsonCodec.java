@@ -0,0 +1,132 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Event-bus codec handing JSON payloads to a consumer of the same Vert.x instance by reference,
+ * where the default codecs deep-copy them. Payloads cannot be written to the wire, so the codec is
+ * only used when the event bus is not clustered.
+ * <p>
+ * {@link JsonObject} and {@link JsonArray} cannot be made read-only, so nothing stops both ends
+ * from changing a payload they share. Ownership passes to the receiver instead: a sender keeping
+ * a value it sends, such as a request argument it uses again once answered, sends a copy of it,
+ * and the database service only replies with objects built for that reply.
+ */
+class LocalJsonCodec implements MessageCodec<Object, Object> {
+
+    static final String NAME = "wiki.local-json";
+
+    /**
+     * Registers the codec once per Vert.x instance and tells whether it may be used.
+     */
+    static boolean register(Vertx vertx) {
+        if (vertx.isClustered()) {
+            return false;
+        }
+        LocalMap<String, Boolean> registered = vertx.sharedData().getLocalMap(NAME);
+        if (registered.putIfAbsent(NAME, Boolean.TRUE) == null) {
+            vertx.eventBus().registerCodec(new LocalJsonCodec());
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a received message so that JSON replies are sent with this codec.
+     */
+    static <T> Message<T> replyingByReference(Message<T> message) {
+        return new ReferenceReplyMessage<>(message);
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, Object body) {
+        throw new UnsupportedOperationException(NAME + " payloads cannot leave the Vert.x instance");
+    }
+
+    @Override
+    public Object decodeFromWire(int pos, Buffer buffer) {
+        throw new UnsupportedOperationException(NAME + " payloads cannot leave the Vert.x instance");
+    }
+
+    @Override
+    public Object transform(Object body) {
+        return body;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    private static final class ReferenceReplyMessage<T> implements Message<T> {
+        private final Message<T> delegate;
+
+        ReferenceReplyMessage(Message<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String address() {
+            return delegate.address();
+        }
+
+        @Override
+        public MultiMap headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public T body() {
+            return delegate.body();
+        }
+
+        @Override
+        public String replyAddress() {
+            return delegate.replyAddress();
+        }
+
+        @Override
+        public boolean isSend() {
+            return delegate.isSend();
+        }
+
+        @Override
+        public void reply(Object message) {
+            if (message instanceof JsonObject || message instanceof JsonArray) {
+                delegate.reply(message, new DeliveryOptions().setCodecName(NAME));
+            } else {
+                delegate.reply(message);
+            }
+        }
+
+        @Override
+        public void reply(Object message, DeliveryOptions options) {
+            delegate.reply(message, options);
+        }
+
+        @Override
+        public <R> void replyAndRequest(Object message, DeliveryOptions options, Handler<AsyncResult<Message<R>>> replyHandler) {
+            delegate.replyAndRequest(message, options, replyHandler);
+        }
+
+        @Override
+        public <R> Future<Message<R>> replyAndRequest(Object message, DeliveryOptions options) {
+            return delegate.replyAndRequest(message, options);
+        }
+    }
+}
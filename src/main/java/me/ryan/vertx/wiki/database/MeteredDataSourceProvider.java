@@ -0,0 +1,196 @@
+package me.ryan.vertx.wiki.database;
+
+import com.mchange.v2.c3p0.PooledDataSource;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider;
+import me.ryan.vertx.wiki.metrics.Histogram;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * C3P0 data source provider that records connection checkout times and exposes pool utilization.
+ * The JDBC client instantiates providers reflectively through its {@code provider_class} setting,
+ * so pools are matched to their metrics by the {@link #CONFIG_POOL_NAME} entry of the client
+ * configuration, which must hold a key returned by {@link #bind(String, MetricsRegistry)} and be
+ * released with {@link #unbind(String)} once the pool is closed.
+ * <p>
+ * The statement cache of the pool is reported with the statistics C3P0 keeps for it: the number of
+ * statements cached and of connections caching some.
+ */
+public class MeteredDataSourceProvider implements DataSourceProvider {
+
+    public static final String CONFIG_POOL_NAME = "metrics_pool_name";
+
+    private static final ConcurrentMap<String, PoolMetrics> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicLong BINDINGS = new AtomicLong();
+
+    private final C3P0DataSourceProvider delegate = new C3P0DataSourceProvider();
+
+    /**
+     * Registers the metrics of a pool labelled {@code poolName} in {@code metrics}, and returns the
+     * key naming them in the pool configuration. Keys are unique, so pools of the same name in
+     * several Vert.x instances of a JVM each report to their own registry.
+     */
+    public static String bind(String poolName, MetricsRegistry metrics) {
+        String key = poolName + "#" + BINDINGS.incrementAndGet();
+        POOLS.put(key, new PoolMetrics(poolName, metrics));
+        return key;
+    }
+
+    public static void unbind(String key) {
+        POOLS.remove(key);
+    }
+
+    @Override
+    public DataSourceProvider init(JsonObject config) {
+        delegate.init(config);
+        return this;
+    }
+
+    @Override
+    public JsonObject getInitialConfig() {
+        return delegate.getInitialConfig();
+    }
+
+    @Override
+    public int maximumPoolSize(DataSource dataSource, JsonObject config) throws SQLException {
+        return delegate.maximumPoolSize(unwrap(dataSource), config);
+    }
+
+    @Override
+    public DataSource getDataSource(JsonObject config) throws SQLException {
+        DataSource dataSource = delegate.getDataSource(config);
+        PoolMetrics pool = POOLS.get(config.getString(CONFIG_POOL_NAME, ""));
+        if (pool == null) {
+            return dataSource;
+        }
+        pool.dataSource = (PooledDataSource) dataSource;
+        return new MeteredDataSource(dataSource, pool);
+    }
+
+    @Override
+    public void close(DataSource dataSource) throws SQLException {
+        if (dataSource instanceof MeteredDataSource) {
+            ((MeteredDataSource) dataSource).pool.dataSource = null;
+        }
+        delegate.close(unwrap(dataSource));
+    }
+
+    private static DataSource unwrap(DataSource dataSource) {
+        return dataSource instanceof MeteredDataSource ? ((MeteredDataSource) dataSource).delegate : dataSource;
+    }
+
+    private static final class PoolMetrics {
+        final Histogram checkout;
+        volatile PooledDataSource dataSource;
+
+        PoolMetrics(String poolName, MetricsRegistry metrics) {
+            checkout = metrics.histogram("jdbc_pool_checkout_seconds",
+                    "Time spent waiting for a pooled connection", "pool", poolName);
+            gauge(metrics, poolName, "jdbc_statement_cache_statements", "Prepared statements held in the statement cache",
+                    PooledDataSource::getStatementCacheNumStatementsDefaultUser);
+            gauge(metrics, poolName, "jdbc_statement_cache_connections", "Connections holding cached statements",
+                    PooledDataSource::getStatementCacheNumConnectionsWithCachedStatementsDefaultUser);
+            gauge(metrics, poolName, "jdbc_pool_connections", "Open connections",
+                    PooledDataSource::getNumConnectionsDefaultUser);
+            gauge(metrics, poolName, "jdbc_pool_busy_connections", "Connections checked out of the pool",
+                    PooledDataSource::getNumBusyConnectionsDefaultUser);
+            gauge(metrics, poolName, "jdbc_pool_awaiting_checkout", "Threads waiting for a connection",
+                    PooledDataSource::getNumThreadsAwaitingCheckoutDefaultUser);
+        }
+
+        private void gauge(MetricsRegistry metrics, String poolName, String name, String help, PoolStatistic statistic) {
+            metrics.gauge(name, help, () -> {
+                PooledDataSource pooled = dataSource;
+                if (pooled == null) {
+                    return 0;
+                }
+                try {
+                    return statistic.read(pooled);
+                } catch (SQLException e) {
+                    return Double.NaN;
+                }
+            }, "pool", poolName);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PoolStatistic {
+        int read(PooledDataSource dataSource) throws SQLException;
+    }
+
+    private static final class MeteredDataSource implements DataSource {
+        final DataSource delegate;
+        final PoolMetrics pool;
+
+        MeteredDataSource(DataSource delegate, PoolMetrics pool) {
+            this.delegate = delegate;
+            this.pool = pool;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.getConnection();
+            } finally {
+                pool.checkout.recordSince(start);
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.getConnection(username, password);
+            } finally {
+                pool.checkout.recordSince(start);
+            }
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return delegate.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            delegate.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            delegate.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return delegate.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return delegate.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return iface.isInstance(delegate) ? iface.cast(delegate) : delegate.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(delegate) || delegate.isWrapperFor(iface);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import me.ryan.vertx.wiki.metrics.Counter;
+import me.ryan.vertx.wiki.metrics.Histogram;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates a {@link WikiDatabaseService} with a latency histogram and a failure counter per
+ * method, measured from the call until its result handler runs.
+ */
+class MeteredWikiDatabaseService implements WikiDatabaseService {
+
+    private final WikiDatabaseService delegate;
+    private final MetricsRegistry metrics;
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    MeteredWikiDatabaseService(WikiDatabaseService delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchAllPages(timed("fetchAllPages", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPage(name, timed("fetchPage", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPageById(id, timed("fetchPageById", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPageVersion(id, timed("fetchPageVersion", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler) {
+        delegate.fetchListingVersion(timed("fetchListingVersion", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.createPage(title, markdown, timed("createPage", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.savePage(id, markdown, timed("savePage", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.patchPage(id, baseRevision, edits, timed("patchPage", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPageRevision(id, revision, timed("fetchPageRevision", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchPageRevisions(id, limit, timed("fetchPageRevisions", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.deletePage(id, timed("deletePage", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchAllPagesData(timed("fetchAllPagesData", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchPageSummaries(afterId, limit, timed("fetchPageSummaries", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.searchPageNames(prefix, limit, timed("searchPageNames", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.searchPages(query, limit, timed("searchPages", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.batchUpsertPages(pages, timed("batchUpsertPages", resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler) {
+        delegate.exportPages(address, batchSize, timed("exportPages", resultHandler));
+        return this;
+    }
+
+    private <T> Handler<AsyncResult<T>> timed(String method, Handler<AsyncResult<T>> resultHandler) {
+        Timer timer = timers.computeIfAbsent(method, Timer::new);
+        long start = System.nanoTime();
+        return ar -> {
+            timer.latency.recordSince(start);
+            if (ar.failed()) {
+                timer.failures.increment();
+            }
+            resultHandler.handle(ar);
+        };
+    }
+
+    private final class Timer {
+        final Histogram latency;
+        final Counter failures;
+
+        Timer(String method) {
+            latency = metrics.histogram("wikidb_service_call_seconds",
+                    "Time taken by database service calls", "method", method);
+            failures = metrics.counter("wikidb_service_failures_total",
+                    "Database service calls that failed", "method", method);
+        }
+    }
+}
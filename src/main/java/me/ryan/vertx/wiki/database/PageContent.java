@@ -0,0 +1,77 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec of the compressed form of page content. A compressed value starts with a format byte and
+ * the length of the content in UTF-8 bytes, followed by the content, deflated, or as it is when
+ * deflating would not make it smaller. A codec reuses its deflater and inflater, so it must only be
+ * used from one thread at a time, as a database service is from the context of its verticle.
+ */
+final class PageContent {
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+    private static final int HEADER_LENGTH = 5;
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+
+    Buffer compress(String content) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        byte[] packed = new byte[HEADER_LENGTH + text.length];
+        deflater.reset();
+        deflater.setInput(text);
+        deflater.finish();
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < packed.length) {
+            length += deflater.deflate(packed, length, packed.length - length);
+        }
+        if (deflater.finished()) {
+            packed[0] = DEFLATED;
+        } else {
+            packed[0] = STORED;
+            System.arraycopy(text, 0, packed, HEADER_LENGTH, text.length);
+            length = packed.length;
+        }
+        return Buffer.buffer(length)
+                .appendByte(packed[0])
+                .appendInt(text.length)
+                .appendBytes(packed, HEADER_LENGTH, length - HEADER_LENGTH);
+    }
+
+    String decompress(Buffer packed) {
+        if (packed.length() < HEADER_LENGTH) {
+            throw new IllegalStateException("Truncated page content");
+        }
+        byte format = packed.getByte(0);
+        int length = packed.getInt(1);
+        if (format == STORED) {
+            return packed.getString(HEADER_LENGTH, packed.length(), StandardCharsets.UTF_8.name());
+        }
+        if (format != DEFLATED) {
+            throw new IllegalStateException("Unknown page content format " + format);
+        }
+        byte[] text = new byte[length];
+        inflater.reset();
+        inflater.setInput(packed.getBytes(HEADER_LENGTH, packed.length()));
+        try {
+            int read = 0;
+            while (read < length) {
+                int inflated = inflater.inflate(text, read, length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated page content");
+                }
+                read += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt page content", e);
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * In-memory ordered index of page names, loaded once by {@link WikiDatabaseServiceImpl} and kept
+ * current as pages are created and deleted. Names are kept both in natural order, for listings,
+ * and in case-folded order, for prefix lookups. Instances are confined to the database verticle
+ * event loop.
+ */
+class PageNameIndex {
+
+    private static final Comparator<Entry> NATURAL_ORDER = Comparator
+            .comparing((Entry e) -> e.name)
+            .thenComparingInt(e -> e.id);
+
+    private static final Comparator<Entry> FOLDED_ORDER = Comparator
+            .comparing((Entry e) -> e.folded)
+            .thenComparingInt(e -> e.id);
+
+    private final NavigableSet<Entry> byName = new TreeSet<>(NATURAL_ORDER);
+    private final NavigableSet<Entry> byFoldedName = new TreeSet<>(FOLDED_ORDER);
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    private long generation;
+
+    void add(int id, String name) {
+        remove(id);
+        Entry entry = new Entry(id, name != null ? name : "");
+        byName.add(entry);
+        byFoldedName.add(entry);
+        byId.put(id, entry);
+        generation++;
+    }
+
+    void remove(int id) {
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+            byName.remove(entry);
+            byFoldedName.remove(entry);
+            generation++;
+        }
+    }
+
+    String name(int id) {
+        Entry entry = byId.get(id);
+        return entry != null ? entry.name : null;
+    }
+
+    Integer id(String name) {
+        Entry first = byName.ceiling(new Entry(Integer.MIN_VALUE, name));
+        return first != null && first.name.equals(name) ? first.id : null;
+    }
+
+    /**
+     * Number of changes applied since the index was created, usable as a version of the listing.
+     */
+    long generation() {
+        return generation;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    JsonArray names() {
+        JsonArray names = new JsonArray();
+        for (Entry entry : byName) {
+            names.add(entry.name);
+        }
+        return names;
+    }
+
+    JsonArray withPrefix(String prefix, int limit) {
+        String folded = fold(prefix);
+        JsonArray matches = new JsonArray();
+        for (Entry entry : byFoldedName.tailSet(new Entry(Integer.MIN_VALUE, folded, folded), true)) {
+            if (matches.size() >= limit || !entry.folded.startsWith(folded)) {
+                break;
+            }
+            matches.add(new JsonObject()
+                    .put("id", entry.id)
+                    .put("name", entry.name));
+        }
+        return matches;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        final int id;
+        final String name;
+        final String folded;
+
+        Entry(int id, String name) {
+            this(id, name, fold(name));
+        }
+
+        Entry(int id, String name, String folded) {
+            this.id = id;
+            this.name = name;
+            this.folded = folded;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.eventbus.Message;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which database service requests must be served by the primary so that a client reads
+ * its own writes. Clients name themselves with the {@link WikiDatabaseVerticle#CLIENT_HEADER}
+ * header; once a client has written, its requests go to the primary for {@code window}
+ * milliseconds, the replication lag the replicas are expected to stay within. Requests without
+ * the header may be served by a replica at any time. Instances are confined to the event loop of
+ * the database verticle.
+ */
+class ReadYourWrites {
+
+    private static final Set<String> WRITES = Set.of("createPage", "savePage", "patchPage", "deletePage", "batchUpsertPages");
+
+    private final long window;
+    // clients by time of their last write, oldest first
+    private final LinkedHashMap<String, Long> lastWrites = new LinkedHashMap<>();
+
+    ReadYourWrites(long window) {
+        this.window = window;
+    }
+
+    boolean needsPrimary(Message<?> message) {
+        String client = message.headers().get(WikiDatabaseVerticle.CLIENT_HEADER);
+        if (client == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (WRITES.contains(message.headers().get("action"))) {
+            lastWrites.remove(client);
+            lastWrites.put(client, now);
+            return true;
+        }
+        return lastWrites.containsKey(client);
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Long>> oldest = lastWrites.entrySet().iterator();
+        while (oldest.hasNext() && now - oldest.next().getValue() >= window) {
+            oldest.remove();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Decorates a {@link WikiDatabaseService} by sending the operations that only read the database to
+ * read replicas, in turn. Writes, and the reads served from the in-memory indexes of the primary,
+ * still go to the primary. Replicas lag behind the primary, so callers that must see their own
+ * writes are served by the primary directly; see {@link ReadYourWrites}.
+ */
+class ReplicaWikiDatabaseService implements WikiDatabaseService {
+
+    private final WikiDatabaseService primary;
+    private final List<WikiDatabaseService> replicas;
+    private int next;
+
+    ReplicaWikiDatabaseService(WikiDatabaseService primary, List<WikiDatabaseService> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+    private WikiDatabaseService replica() {
+        WikiDatabaseService replica = replicas.get(next);
+        next = (next + 1) % replicas.size();
+        return replica;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        primary.fetchAllPages(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        replica().fetchPage(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        replica().fetchPageById(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        replica().fetchPageVersion(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler) {
+        primary.fetchListingVersion(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        primary.createPage(title, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        primary.savePage(id, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler) {
+        primary.patchPage(id, baseRevision, edits, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler) {
+        replica().fetchPageRevision(id, revision, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        replica().fetchPageRevisions(id, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+        primary.deletePage(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        replica().fetchAllPagesData(resultHandler);
+        return this;
+    }
+
+    /**
+     * Listings are labelled with the listing version of the primary, so they are read from it too:
+     * a lagging replica would serve an older listing under the newer version.
+     */
+    @Override
+    public WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        primary.fetchPageSummaries(afterId, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        primary.searchPageNames(prefix, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        primary.searchPages(query, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler) {
+        primary.batchUpsertPages(pages, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler) {
+        replica().exportPages(address, batchSize, resultHandler);
+        return this;
+    }
+}
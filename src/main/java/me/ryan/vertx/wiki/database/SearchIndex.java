@@ -0,0 +1,247 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Incremental inverted index over page names and markdown, ranked with BM25.
+ * <p>
+ * Documents live in slots; replacing or removing a page retires its slot and the postings that
+ * point to it are skipped until the next compaction. Instances are confined to the database
+ * verticle event loop, like {@link PageNameIndex}.
+ */
+class SearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_COMPACTION_SLOTS = 1024;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "that", "the", "this", "to", "was", "with"));
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Integer> slotByPage = new HashMap<>();
+
+    private int[] slotPage = new int[64];
+    private int[] slotLength = new int[64];
+    private String[][] slotTerms = new String[64][];
+    private int slotCount;
+    private int liveCount;
+    private long totalLength;
+
+    private double[] scores = new double[64];
+
+    void index(int id, String name, String markdown) {
+        remove(id);
+
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        int length = tokenize(name, frequencies) + tokenize(markdown, frequencies);
+
+        int slot = allocateSlot();
+        slotPage[slot] = id;
+        slotLength[slot] = length;
+        slotTerms[slot] = frequencies.keySet().toArray(new String[0]);
+        slotByPage.put(id, slot);
+        liveCount++;
+        totalLength += length;
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(slot, entry.getValue());
+        }
+    }
+
+    void remove(int id) {
+        Integer slot = slotByPage.remove(id);
+        if (slot == null) {
+            return;
+        }
+        for (String term : slotTerms[slot]) {
+            postings.get(term).documentFrequency--;
+        }
+        totalLength -= slotLength[slot];
+        slotLength[slot] = -1;
+        slotTerms[slot] = null;
+        liveCount--;
+
+        int deadCount = slotCount - liveCount;
+        if (deadCount > MIN_COMPACTION_SLOTS && deadCount > liveCount) {
+            compact();
+        }
+    }
+
+    int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns up to {@code limit} {@code {id, score}} objects, best match first.
+     */
+    JsonArray search(String query, int limit) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        tokenize(query, terms);
+        if (terms.isEmpty() || liveCount == 0 || limit <= 0) {
+            return new JsonArray();
+        }
+
+        double averageLength = Math.max(1.0, (double) totalLength / liveCount);
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (String term : terms.keySet()) {
+            Postings list = postings.get(term);
+            if (list == null || list.documentFrequency == 0) {
+                continue;
+            }
+            double df = list.documentFrequency;
+            double idf = Math.log(1.0 + (liveCount - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int slot = list.slots[i];
+                int length = slotLength[slot];
+                if (length < 0) {
+                    continue;
+                }
+                double tf = list.frequencies[i];
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                if (scores[slot] == 0.0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = slot;
+                }
+                scores[slot] += score;
+            }
+        }
+
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(scores[a], scores[b]));
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (best.size() < limit) {
+                best.add(slot);
+            } else if (scores[slot] > scores[best.peek()]) {
+                best.poll();
+                best.add(slot);
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll());
+        }
+        JsonArray results = new JsonArray();
+        for (int i = ranked.size() - 1; i >= 0; i--) {
+            int slot = ranked.get(i);
+            results.add(new JsonObject()
+                    .put("id", slotPage[slot])
+                    .put("score", scores[slot]));
+        }
+
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0.0;
+        }
+        return results;
+    }
+
+    static int tokenize(String text, Map<String, Integer> frequencies) {
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                start = -1;
+                if (!STOP_WORDS.contains(token)) {
+                    frequencies.merge(token, 1, Integer::sum);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int allocateSlot() {
+        if (slotCount == slotPage.length) {
+            int capacity = slotCount * 2;
+            slotPage = Arrays.copyOf(slotPage, capacity);
+            slotLength = Arrays.copyOf(slotLength, capacity);
+            slotTerms = Arrays.copyOf(slotTerms, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void compact() {
+        int[] remap = new int[slotCount];
+        int next = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotLength[slot] < 0) {
+                remap[slot] = -1;
+            } else {
+                remap[slot] = next;
+                slotPage[next] = slotPage[slot];
+                slotLength[next] = slotLength[slot];
+                slotTerms[next] = slotTerms[slot];
+                slotByPage.put(slotPage[next], next);
+                next++;
+            }
+        }
+        Arrays.fill(slotTerms, next, slotCount, null);
+        slotCount = next;
+
+        Iterator<Postings> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            Postings list = iterator.next();
+            list.remap(remap);
+            if (list.size == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+        int documentFrequency;
+
+        void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+            documentFrequency++;
+        }
+
+        void remap(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = remap[slots[i]];
+                if (slot >= 0) {
+                    slots[kept] = slot;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * Database service over the shards of a database split by {@link WikiDatabaseVerticle}. A page
+ * lives in the shard picked by the hash of its name, and the ids a shard allocates are congruent
+ * to its index modulo the number of shards, so calls naming a page by name or by id go to its
+ * shard alone. Listings and searches are asked of every shard and merged into the order a single
+ * database would have given.
+ */
+class ShardedWikiDatabaseService implements WikiDatabaseService {
+
+    private static final Comparator<JsonObject> BY_ID = Comparator.comparingInt(page -> page.getInteger("id"));
+    private static final Comparator<JsonObject> BY_FOLDED_NAME = Comparator
+            .comparing((JsonObject page) -> page.getString("name").toLowerCase(Locale.ROOT))
+            .thenComparing(BY_ID);
+    private static final Comparator<JsonObject> BY_SCORE = Comparator
+            .comparingDouble((JsonObject hit) -> hit.getDouble("score")).reversed();
+
+    private final List<WikiDatabaseService> shards;
+
+    ShardedWikiDatabaseService(List<WikiDatabaseService> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Proxies to each shard of the service bound at {@code address}. Every proxy gets its own copy
+     * of {@code options}: proxies add their action to the headers of the options they are given.
+     */
+    static WikiDatabaseService proxy(Vertx vertx, String address, int shards, DeliveryOptions options) {
+        List<WikiDatabaseService> proxies = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            DeliveryOptions copy = new DeliveryOptions(options);
+            if (options.getHeaders() != null) {
+                copy.setHeaders(MultiMap.caseInsensitiveMultiMap().addAll(options.getHeaders()));
+            }
+            proxies.add(WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.shardAddress(address, shard, shards), copy)
+                    .getDelegate());
+        }
+        return new ShardedWikiDatabaseService(proxies);
+    }
+
+    /**
+     * The shard of a page name. The bits of its hash code are mixed first (the murmur3 finalizer),
+     * as the low bits of a string hash code follow the parity of its characters.
+     */
+    static int shardOf(String name, int shards) {
+        if (name == null) {
+            return 0;
+        }
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards);
+    }
+
+    private WikiDatabaseService byName(String name) {
+        return shards.get(shardOf(name, shards.size()));
+    }
+
+    private WikiDatabaseService byId(int id) {
+        return shards.get(Math.floorMod(id, shards.size()));
+    }
+
+    /**
+     * Makes the same call on every shard, completing with their results in shard order.
+     */
+    private <T> Future<List<T>> gather(BiConsumer<WikiDatabaseService, Handler<AsyncResult<T>>> call) {
+        List<Future<T>> results = new ArrayList<>(shards.size());
+        for (WikiDatabaseService shard : shards) {
+            Promise<T> result = Promise.promise();
+            call.accept(shard, result);
+            results.add(result.future());
+        }
+        return CompositeFuture.all(new ArrayList<>(results)).map(done -> {
+            List<T> list = new ArrayList<>(results.size());
+            results.forEach(result -> list.add(result.result()));
+            return list;
+        });
+    }
+
+    private static JsonArray merge(List<JsonArray> results, Comparator<JsonObject> order, int limit) {
+        List<JsonObject> merged = new ArrayList<>();
+        for (JsonArray result : results) {
+            for (int i = 0; i < result.size(); i++) {
+                merged.add(result.getJsonObject(i));
+            }
+        }
+        merged.sort(order);
+        return new JsonArray(new ArrayList<>(merged.subList(0, Math.min(limit, merged.size()))));
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        this.<JsonArray>gather(WikiDatabaseService::fetchAllPages)
+                .map(results -> {
+                    List<String> names = new ArrayList<>();
+                    for (JsonArray result : results) {
+                        for (int i = 0; i < result.size(); i++) {
+                            names.add(result.getString(i));
+                        }
+                    }
+                    names.sort(null);
+                    return new JsonArray(new ArrayList<>(names));
+                })
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        byName(name).fetchPage(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        byId(id).fetchPageById(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        byId(id).fetchPageVersion(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler) {
+        this.<String>gather(WikiDatabaseService::fetchListingVersion)
+                .map(versions -> String.join(".", versions))
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        byName(title).createPage(title, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        byId(id).savePage(id, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler) {
+        byId(id).patchPage(id, baseRevision, edits, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler) {
+        byId(id).fetchPageRevision(id, revision, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        byId(id).fetchPageRevisions(id, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+        byId(id).deletePage(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        this.<List<JsonObject>>gather(WikiDatabaseService::fetchAllPagesData)
+                .map(results -> {
+                    List<JsonObject> pages = new ArrayList<>();
+                    results.forEach(pages::addAll);
+                    return pages;
+                })
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    /**
+     * Each shard answers with its first {@code limit} pages after {@code afterId}, so the first
+     * {@code limit} of their union are the first of the whole database.
+     */
+    @Override
+    public WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        this.<JsonArray>gather((shard, result) -> shard.fetchPageSummaries(afterId, limit, result))
+                .map(results -> merge(results, BY_ID, limit))
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        this.<JsonArray>gather((shard, result) -> shard.searchPageNames(prefix, limit, result))
+                .map(results -> merge(results, BY_FOLDED_NAME, limit))
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    /**
+     * Scores are computed by each shard from the statistics of its own pages, which hash
+     * partitioning keeps close to those of the whole wiki.
+     */
+    @Override
+    public WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        this.<JsonArray>gather((shard, result) -> shard.searchPages(query, limit, result))
+                .map(results -> merge(results, BY_SCORE, limit))
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    /**
+     * Splits the pages by shard, keeping their order within each shard, and puts the results of
+     * the shards back in the order of {@code pages}.
+     */
+    @Override
+    public WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler) {
+        List<List<Integer>> indexes = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            indexes.add(new ArrayList<>());
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            Object name = pages.get(i).getValue("name");
+            indexes.get(shardOf(name instanceof String ? (String) name : null, shards.size())).add(i);
+        }
+
+        List<Future<JsonArray>> results = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<JsonObject> part = new ArrayList<>(indexes.get(shard).size());
+            for (int index : indexes.get(shard)) {
+                part.add(pages.get(index));
+            }
+            Promise<JsonArray> result = Promise.promise();
+            if (part.isEmpty()) {
+                result.complete(new JsonArray());
+            } else {
+                shards.get(shard).batchUpsertPages(part, result);
+            }
+            results.add(result.future());
+        }
+        CompositeFuture.all(new ArrayList<>(results))
+                .map(done -> {
+                    JsonObject[] merged = new JsonObject[pages.size()];
+                    for (int shard = 0; shard < shards.size(); shard++) {
+                        JsonArray part = results.get(shard).result();
+                        for (int k = 0; k < part.size(); k++) {
+                            int index = indexes.get(shard).get(k);
+                            merged[index] = part.getJsonObject(k).put("index", index);
+                        }
+                    }
+                    return new JsonArray(Arrays.asList(merged));
+                })
+                .onComplete(resultHandler);
+        return this;
+    }
+
+    /**
+     * Exports the shards one after the other, so the receiver still gets one batch at a time. Pages
+     * are in id order within each shard only.
+     */
+    @Override
+    public WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler) {
+        Future<Integer> exported = Future.succeededFuture(0);
+        for (WikiDatabaseService shard : shards) {
+            exported = exported.compose(total -> {
+                Promise<Integer> result = Promise.promise();
+                shard.exportPages(address, batchSize, result);
+                return result.future().map(count -> total + count);
+            });
+        }
+        exported.onComplete(resultHandler);
+        return this;
+    }
+}
@@ -2,11 +2,35 @@ package me.ryan.vertx.wiki.database;
 
 public enum SqlQuery {
     CREATE_PAGES_TABLE,
+    CREATE_SHARDED_PAGES_TABLE,
+    ADD_PAGES_VERSION,
+    ADD_PAGES_UPDATED_AT,
+    ADD_PAGES_COMPRESSED_CONTENT,
     ALL_PAGES,
     ALL_PAGES_DATA,
+    PAGE_SUMMARIES,
+    LOCK_PAGES,
     GET_PAGE,
+    GET_PAGE_ID,
     GET_PAGE_BY_ID,
+    GET_PAGE_VERSION,
     CREATE_PAGE,
     SAVE_PAGE,
-    DELETE_PAGE
+    DELETE_PAGE,
+    CREATE_REVISIONS_TABLE,
+    ADD_REVISIONS_COMPRESSED_CONTENT,
+    GET_PAGE_HEAD,
+    UPDATE_PAGE_IF_VERSION,
+    INSERT_REVISION,
+    SNAPSHOT_REVISION,
+    REVISION_STATE,
+    REVISION_CHAIN,
+    PAGE_REVISIONS,
+    DELETE_PAGE_REVISIONS,
+    EXPORT_PAGES,
+    UNCOMPRESSED_PAGES,
+    COMPRESS_PAGE,
+    CREATE_SCHEMA_VERSION_TABLE,
+    GET_SCHEMA_VERSION,
+    SET_SCHEMA_VERSION
 }
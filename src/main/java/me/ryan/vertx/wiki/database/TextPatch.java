@@ -0,0 +1,72 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Text deltas exchanged with clients and stored as page revisions. A delta is a JSON array of
+ * {@code [start, deleteCount, insertedText]} edits whose positions refer to the base text and
+ * which are sorted and do not overlap.
+ */
+final class TextPatch {
+
+    private TextPatch() {
+    }
+
+    /**
+     * Applies {@code edits} to {@code base}.
+     *
+     * @throws IllegalArgumentException if the edits are malformed or do not fit the base text
+     */
+    static String apply(String base, JsonArray edits) {
+        StringBuilder patched = new StringBuilder(base.length() + 64);
+        int position = 0;
+        for (int i = 0; i < edits.size(); i++) {
+            Object item = edits.getValue(i);
+            if (!(item instanceof JsonArray) || ((JsonArray) item).size() != 3) {
+                throw new IllegalArgumentException("Edit " + i + " is not a [start, deleteCount, text] triple");
+            }
+            JsonArray edit = (JsonArray) item;
+            int start;
+            int deleteCount;
+            String text;
+            try {
+                start = edit.getInteger(0);
+                deleteCount = edit.getInteger(1);
+                text = edit.getString(2);
+            } catch (ClassCastException | NullPointerException e) {
+                throw new IllegalArgumentException("Edit " + i + " is not a [start, deleteCount, text] triple");
+            }
+            if (start < position || deleteCount < 0 || start + deleteCount > base.length()) {
+                throw new IllegalArgumentException("Edit " + i + " overlaps a previous edit or exceeds the text");
+            }
+            patched.append(base, position, start).append(text);
+            position = start + deleteCount;
+        }
+        return patched.append(base, position, base.length()).toString();
+    }
+
+    /**
+     * A delta turning {@code before} into {@code after}, made of a single edit spanning everything
+     * between their common prefix and suffix.
+     */
+    static JsonArray diff(String before, String after) {
+        int prefix = 0;
+        int max = Math.min(before.length(), after.length());
+        while (prefix < max && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        JsonArray edits = new JsonArray();
+        if (prefix + suffix < before.length() || prefix + suffix < after.length()) {
+            edits.add(new JsonArray()
+                    .add(prefix)
+                    .add(before.length() - prefix - suffix)
+                    .add(after.substring(prefix, after.length() - suffix)));
+        }
+        return edits;
+    }
+}
@@ -7,9 +7,10 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.sqlclient.Pool;
 import java.util.HashMap;
 import java.util.List;
 
@@ -26,25 +27,93 @@ public interface WikiDatabaseService {
     @Fluent
     WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler);
 
+    @Fluent
+    WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler);
+
     @Fluent
     WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler);
 
     @Fluent
     WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler);
 
+    /**
+     * Applies {@link TextPatch} edits made against revision {@code baseRevision} of a page. The
+     * result has a {@code status} of {@code patched}, {@code conflict} (the page has moved past the
+     * base revision), {@code invalid} (the edits do not apply) or {@code not-found}, and the
+     * current {@code version} of the page.
+     */
+    @Fluent
+    WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler);
+
     @Fluent
     WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler);
 
     @Fluent
     WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler);
 
+    @Fluent
+    WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler);
+
+    @Fluent
+    WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler);
+
+    /**
+     * Streams every page, in id order, to {@code address}: each batch of at
+     * most {@code batchSize} pages ({@code id}, {@code name}, {@code markdown}, {@code version}) is
+     * sent as a JSON array request, and the next batch is only read once the previous one has been
+     * acknowledged, so neither side holds more than a batch. A failed acknowledgement aborts the
+     * export. The result is the number of pages exported.
+     */
+    @Fluent
+    WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler);
+
+    @GenIgnore
+    static WikiDatabaseService create(Vertx vertx, Pool pool, HashMap<SqlQuery, String> sqlQueries, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        return new WikiDatabaseServiceImpl(vertx, pool, sqlQueries, readyHandler);
+    }
+
     @GenIgnore
-    static WikiDatabaseService create(JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
-        return new WikiDatabaseServiceImpl(dbClient, sqlQueries, readyHandler);
+    static WikiDatabaseService create(Vertx vertx, Pool pool, HashMap<SqlQuery, String> sqlQueries, boolean compressContent, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        return new WikiDatabaseServiceImpl(vertx, pool, sqlQueries, compressContent, readyHandler);
     }
 
     @GenIgnore
     static me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService createProxy(Vertx vertx, String address) {
-        return new me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService(new WikiDatabaseServiceVertxEBProxy(vertx, address));
+        return createProxy(vertx, address, new DeliveryOptions());
+    }
+
+    @GenIgnore
+    static me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+        if (LocalJsonCodec.register(vertx)) {
+            options.setCodecName(LocalJsonCodec.NAME);
+        }
+        return new me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService(new WikiDatabaseServiceVertxEBProxy(vertx, address, options));
+    }
+
+    /**
+     * A proxy to a database split into {@code shards} shards, sending each call to the shards that
+     * hold the pages it concerns.
+     */
+    @GenIgnore
+    static me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService createProxy(Vertx vertx, String address, int shards, DeliveryOptions options) {
+        if (shards <= 1) {
+            return createProxy(vertx, address, options);
+        }
+        return new me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService(ShardedWikiDatabaseService.proxy(vertx, address, shards, options));
     }
 }
@@ -1,59 +1,196 @@
 package me.ryan.vertx.wiki.database;
 
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.sql.ResultSet;
+import io.vertx.jdbcclient.JDBCPool;
 import io.vertx.reactivex.CompletableHelper;
 import io.vertx.reactivex.SingleHelper;
-import io.vertx.reactivex.ext.jdbc.JDBCClient;
-import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.sqlclient.Pool;
+import io.vertx.reactivex.sqlclient.Row;
+import io.vertx.reactivex.sqlclient.RowSet;
+import io.vertx.reactivex.sqlclient.SqlConnection;
+import io.vertx.reactivex.sqlclient.Tuple;
+import io.vertx.serviceproxy.ServiceException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+/**
+ * Database service over a Vert.x SQL client pool. The same code runs against the JDBC pool and the
+ * reactive PostgreSQL pool; dialect differences are confined to the SQL queries file, and results
+ * are read by column position.
+ */
 public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final int SNAPSHOT_INTERVAL = 16;
+    private static final int MAX_SAVE_ATTEMPTS = 10;
+    private static final long EXPORT_ACK_TIMEOUT = 5 * 60 * 1000;
+    private static final int COMPRESSION_BATCH_SIZE = 100;
+    // 1: pages with a version, an update time and compressed content, and their revisions
+    private static final int SCHEMA_VERSION = 1;
+    private static final String SCHEMA_COMPONENT = "pages";
+
+    private final Vertx vertx;
     private final Map<SqlQuery, String> sqlQueries;
-    private final JDBCClient dbClient;
+    private final Pool pool;
+    private final PageNameIndex nameIndex = new PageNameIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final long startedAt = System.currentTimeMillis();
+    private final boolean compressContent;
+    private final boolean bytesAsArrays;
+    private final PageContent pageContent = new PageContent();
 
-    public WikiDatabaseServiceImpl(io.vertx.ext.jdbc.JDBCClient dbClient, Map<SqlQuery, String> sqlQueries, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
-        this.sqlQueries = sqlQueries;
-        this.dbClient = new JDBCClient(dbClient);
+    public WikiDatabaseServiceImpl(io.vertx.core.Vertx vertx, io.vertx.sqlclient.Pool pool, Map<SqlQuery, String> sqlQueries, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        this(vertx, pool, sqlQueries, false, readyHandler);
+    }
 
-        SQLClientHelper.usingConnectionSingle(this.dbClient, conn -> conn
-                .rxExecute(sqlQueries.get(SqlQuery.CREATE_PAGES_TABLE))
-                .andThen(Single.just(this)))
+    /**
+     * A service storing page content compressed when {@code compressContent} is set, in which case
+     * the content of existing pages is compressed before the service is ready. Pages are read
+     * whichever way they are stored, so compression can be turned on and off at any time.
+     */
+    public WikiDatabaseServiceImpl(io.vertx.core.Vertx vertx, io.vertx.sqlclient.Pool pool, Map<SqlQuery, String> sqlQueries, boolean compressContent, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        this(vertx, pool, sqlQueries, compressContent);
+
+        withConnection(conn -> createSchema(conn)
+                .flatMap(v -> compressContent ? compressPages(conn, -1) : Single.just(-1))
+                .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.ALL_PAGES_DATA)).rxExecute())
+                .map(rows -> {
+                    for (Row row : rows) {
+                        nameIndex.add(row.getInteger(0), row.getString(1));
+                        searchIndex.index(row.getInteger(0), row.getString(1), content(row, 2));
+                    }
+                    return (WikiDatabaseService) this;
+                }))
                 .subscribe(SingleHelper.toObserver(readyHandler));
     }
 
+    /**
+     * A service over a read replica of the database. It neither creates the schema nor loads the
+     * in-memory name and search indexes, so only the operations that read the database may be
+     * called on it.
+     */
+    WikiDatabaseServiceImpl(io.vertx.core.Vertx vertx, io.vertx.sqlclient.Pool pool, Map<SqlQuery, String> sqlQueries) {
+        this(vertx, pool, sqlQueries, false);
+    }
+
+    private WikiDatabaseServiceImpl(io.vertx.core.Vertx vertx, io.vertx.sqlclient.Pool pool, Map<SqlQuery, String> sqlQueries, boolean compressContent) {
+        this.vertx = Vertx.newInstance(vertx);
+        this.sqlQueries = sqlQueries;
+        this.pool = Pool.newInstance(pool);
+        this.compressContent = compressContent;
+        // the JDBC pool turns buffers into blobs off by one byte in batches, but passes arrays as they are
+        this.bytesAsArrays = pool instanceof JDBCPool;
+    }
+
+    /**
+     * Creates the tables of the pages and brings them up to {@link #SCHEMA_VERSION}, unless the
+     * version recorded in the database is already that one. Every statement is idempotent, so
+     * services starting together on a new database may all run them. Databases recording the
+     * current version never run the statements again, so changing them takes a new version.
+     */
+    private Single<Integer> createSchema(SqlConnection conn) {
+        return conn.preparedQuery(sqlQueries.get(SqlQuery.GET_SCHEMA_VERSION)).rxExecute(Tuple.of(SCHEMA_COMPONENT))
+                .map(rows -> {
+                    Row row = first(rows);
+                    return row != null ? row.getInteger(0) : 0;
+                })
+                // no version table yet
+                .onErrorReturnItem(0)
+                .flatMap(version -> version >= SCHEMA_VERSION ? Single.just(version) : conn
+                        .query(sqlQueries.get(SqlQuery.CREATE_PAGES_TABLE)).rxExecute()
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.ADD_PAGES_VERSION)).rxExecute())
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.ADD_PAGES_UPDATED_AT)).rxExecute())
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.ADD_PAGES_COMPRESSED_CONTENT)).rxExecute())
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.CREATE_REVISIONS_TABLE)).rxExecute())
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.ADD_REVISIONS_COMPRESSED_CONTENT)).rxExecute())
+                        .flatMap(v -> conn.query(sqlQueries.get(SqlQuery.CREATE_SCHEMA_VERSION_TABLE)).rxExecute())
+                        .flatMap(v -> conn.preparedQuery(sqlQueries.get(SqlQuery.SET_SCHEMA_VERSION))
+                                .rxExecute(Tuple.of(SCHEMA_COMPONENT, SCHEMA_VERSION)))
+                        .map(v -> SCHEMA_VERSION));
+    }
+
+    /**
+     * Moves the content of the pages stored as text after {@code afterId} to the compressed column,
+     * a batch of pages at a time, and completes with the id of the last page compressed.
+     */
+    private Single<Integer> compressPages(SqlConnection conn, int afterId) {
+        return conn.preparedQuery(sqlQueries.get(SqlQuery.UNCOMPRESSED_PAGES)).rxExecute(Tuple.of(afterId, COMPRESSION_BATCH_SIZE))
+                .flatMap(rows -> {
+                    List<Tuple> params = new ArrayList<>(rows.size());
+                    int lastId = afterId;
+                    for (Row row : rows) {
+                        lastId = row.getInteger(0);
+                        params.add(Tuple.of(compress(row.getString(1)), lastId));
+                    }
+                    if (params.isEmpty()) {
+                        return Single.just(afterId);
+                    }
+                    int last = lastId;
+                    return batch(conn, SqlQuery.COMPRESS_PAGE, params)
+                            .flatMap(counts -> params.size() < COMPRESSION_BATCH_SIZE
+                                    ? Single.just(last)
+                                    : compressPages(conn, last));
+                });
+    }
+
+    /**
+     * The content held in column {@code column} of a row as text, or in the column after it as
+     * compressed content, which is only decompressed here, once the content is needed.
+     */
+    private String content(Row row, int column) {
+        io.vertx.reactivex.core.buffer.Buffer compressed = row.getBuffer(column + 1);
+        return compressed != null ? pageContent.decompress(compressed.getDelegate()) : row.getString(column);
+    }
+
+    /**
+     * Adds {@code content} to {@code params} as the values of the text and compressed columns, one
+     * of which is left null.
+     */
+    private Tuple addContent(Tuple params, String content) {
+        if (compressContent && content != null) {
+            return params.addValue(null).addValue(compress(content));
+        }
+        return params.addString(content).addValue(null);
+    }
+
+    private Object compress(String content) {
+        io.vertx.core.buffer.Buffer compressed = pageContent.compress(content);
+        return bytesAsArrays ? compressed.getBytes() : compressed;
+    }
+
     @Override
     public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
-        dbClient.rxQuery(sqlQueries.get(SqlQuery.ALL_PAGES))
-                .flatMapPublisher(res -> {
-                    List<JsonArray> results = res.getResults();
-                    return Flowable.fromIterable(results);
-                })
-                .map(json -> json.getString(0))
-                .sorted()
-                .collect(JsonArray::new, JsonArray::add)
-                .subscribe(SingleHelper.toObserver(resultHandler));
+        resultHandler.handle(Future.succeededFuture(nameIndex.names()));
         return this;
     }
 
     @Override
     public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
-        dbClient.rxQueryWithParams(sqlQueries.get(SqlQuery.GET_PAGE), new JsonArray().add(name))
-                .map(result -> {
-                    if (result.getNumRows() > 0) {
-                        JsonArray row = result.getResults().get(0);
+        query(SqlQuery.GET_PAGE, Tuple.of(name))
+                .map(rows -> {
+                    Row row = first(rows);
+                    if (row != null) {
                         return new JsonObject()
                                 .put("found", true)
                                 .put("id", row.getInteger(0))
-                                .put("rawContent", row.getString((1)));
+                                .put("rawContent", content(row, 1));
                     } else {
                         return new JsonObject().put("found", false);
                     }
@@ -63,43 +200,217 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
     @Override
     public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
-        Single<ResultSet> resultSet = dbClient.rxQueryWithParams(sqlQueries.get(SqlQuery.GET_PAGE_BY_ID), new JsonArray().add(id));
-        resultSet.map(result -> {
-            if (result.getNumRows() > 0) {
-                JsonObject row = result.getRows().get(0);
-                return new JsonObject()
-                        .put("found", true)
-                        .put("id", row.getInteger("ID"))
-                        .put("name", row.getString("NAME"))
-                        .put("content", row.getString("CONTENT"));
-            } else {
-                return new JsonObject().put("found", false);
-            }
-        }).subscribe(SingleHelper.toObserver(resultHandler));
+        query(SqlQuery.GET_PAGE_BY_ID, Tuple.of(id))
+                .map(rows -> {
+                    Row row = first(rows);
+                    if (row != null) {
+                        return new JsonObject()
+                                .put("found", true)
+                                .put("id", row.getInteger(0))
+                                .put("name", row.getString(1))
+                                .put("content", content(row, 2))
+                                .put("version", row.getInteger(4))
+                                .put("updatedAt", row.getLong(5));
+                    } else {
+                        return new JsonObject().put("found", false);
+                    }
+                }).subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        query(SqlQuery.GET_PAGE_VERSION, Tuple.of(id))
+                .map(rows -> {
+                    Row row = first(rows);
+                    if (row != null) {
+                        return new JsonObject()
+                                .put("found", true)
+                                .put("version", row.getInteger(0))
+                                .put("updatedAt", row.getLong(1));
+                    } else {
+                        return new JsonObject().put("found", false);
+                    }
+                })
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(startedAt + "-" + nameIndex.generation()));
         return this;
     }
 
     @Override
     public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(title).add(markdown);
-        dbClient.rxUpdateWithParams(sqlQueries.get(SqlQuery.CREATE_PAGE), data)
+        inTransaction(conn -> conn.preparedQuery(sqlQueries.get(SqlQuery.CREATE_PAGE)).rxExecute(addContent(Tuple.of(title), markdown))
+                .map(this::generatedId)
+                .flatMap(id -> conn.preparedQuery(sqlQueries.get(SqlQuery.SNAPSHOT_REVISION)).rxExecute(Tuple.of(id))
+                        .map(rows -> id)))
+                .doOnSuccess(id -> {
+                    nameIndex.add(id, title);
+                    searchIndex.index(id, title, markdown);
+                })
                 .ignoreElement().subscribe(CompletableHelper.toObserver(resultHandler));
         return this;
     }
 
     @Override
     public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(markdown).add(id);
-        dbClient.rxUpdateWithParams(sqlQueries.get(SqlQuery.SAVE_PAGE), data)
-                .ignoreElement()
-                .subscribe(CompletableHelper.toObserver(resultHandler));
+        overwritePage(id, markdown, 1).subscribe(CompletableHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    /**
+     * Saves are not made against a version, so a save losing the race with another change is
+     * made again on top of it, from a fresh read of the page. A save losing
+     * {@link #MAX_SAVE_ATTEMPTS} races in a row fails with {@link ErrorCodes#PAGE_CONFLICT}, and the
+     * save of a page that does not exist with {@link ErrorCodes#PAGE_NOT_FOUND}.
+     */
+    private Completable overwritePage(int id, String markdown, int attempt) {
+        return updatePage(id, null, head -> markdown, null)
+                .flatMapCompletable(result -> {
+                    if ("not-found".equals(result.getString("status"))) {
+                        return Completable.error(new ServiceException(ErrorCodes.PAGE_NOT_FOUND.ordinal(),
+                                "There is no page with ID: " + id));
+                    }
+                    if (!"conflict".equals(result.getString("status"))) {
+                        return Completable.complete();
+                    }
+                    if (attempt >= MAX_SAVE_ATTEMPTS) {
+                        return Completable.error(new ServiceException(ErrorCodes.PAGE_CONFLICT.ordinal(),
+                                "Page " + id + " was modified by " + attempt + " concurrent changes"));
+                    }
+                    return overwritePage(id, markdown, attempt + 1);
+                });
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler) {
+        updatePage(id, baseRevision, head -> TextPatch.apply(head, edits), edits)
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    /**
+     * Replaces the content of a page and records the change as a new revision, in one transaction.
+     * The revision is stored as a delta from the previous one, or as a full snapshot when there is
+     * no recent snapshot to rebuild it from, or when the delta would not be much smaller than the
+     * content, so that rebuilding any revision applies at most {@link #SNAPSHOT_INTERVAL} deltas.
+     *
+     * @param baseRevision the version the change was made against, or {@code null} to overwrite
+     * @param edits        the delta sent by the client, or {@code null} to compute one
+     */
+    private Single<JsonObject> updatePage(int id, Integer baseRevision, Function<String, String> change, JsonArray edits) {
+        String[] saved = new String[1];
+        return inTransaction(conn -> conn.preparedQuery(sqlQueries.get(SqlQuery.GET_PAGE_HEAD)).rxExecute(Tuple.of(id))
+                .flatMap(rows -> {
+                    Row head = first(rows);
+                    if (head == null) {
+                        return Single.just(updateResult("not-found", null));
+                    }
+                    int version = head.getInteger(2);
+                    if (baseRevision != null && baseRevision != version) {
+                        return Single.just(updateResult("conflict", version));
+                    }
+                    String stored = content(head, 0);
+                    String content = stored != null ? stored : "";
+                    String updated;
+                    try {
+                        updated = change.apply(content);
+                    } catch (IllegalArgumentException e) {
+                        return Single.just(updateResult("invalid", version).put("error", e.getMessage()));
+                    }
+                    String delta = (edits != null ? edits : TextPatch.diff(content, updated)).encode();
+                    return conn.preparedQuery(sqlQueries.get(SqlQuery.UPDATE_PAGE_IF_VERSION))
+                            .rxExecute(addContent(Tuple.tuple(), updated).addInteger(id).addInteger(version))
+                            .flatMap(updateRows -> {
+                                if (updateRows.rowCount() == 0) {
+                                    return Single.just(updateResult("conflict", version));
+                                }
+                                return conn.preparedQuery(sqlQueries.get(SqlQuery.REVISION_STATE)).rxExecute(Tuple.of(id))
+                                        .flatMap(stateRows -> {
+                                            Row state = first(stateRows);
+                                            Integer last = state.getInteger(0);
+                                            Integer lastSnapshot = state.getInteger(1);
+                                            int revision = version + 1;
+                                            boolean snapshot = lastSnapshot == null
+                                                    || last == null || last != version
+                                                    || revision - lastSnapshot >= SNAPSHOT_INTERVAL
+                                                    || delta.length() * 2 >= updated.length();
+                                            saved[0] = updated;
+                                            return conn.preparedQuery(sqlQueries.get(SqlQuery.INSERT_REVISION))
+                                                    .rxExecute(addContent(Tuple.of(id, revision, snapshot), snapshot ? updated : delta))
+                                                    .map(v -> updateResult("patched", revision));
+                                        });
+                            });
+                }))
+                .doOnSuccess(result -> {
+                    if ("patched".equals(result.getString("status"))) {
+                        searchIndex.index(id, nameIndex.name(id), saved[0]);
+                    }
+                });
+    }
+
+    private JsonObject updateResult(String status, Integer version) {
+        return new JsonObject()
+                .put("status", status)
+                .put("version", version);
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler) {
+        query(SqlQuery.REVISION_CHAIN, Tuple.of(id, revision, id, revision))
+                .map(rows -> {
+                    String content = null;
+                    int expected = -1;
+                    for (Row row : rows) {
+                        if (content == null) {
+                            String snapshot = content(row, 2);
+                            content = snapshot != null ? snapshot : "";
+                        } else if (row.getInteger(0) != expected) {
+                            content = null;
+                            break;
+                        } else {
+                            content = TextPatch.apply(content, new JsonArray(content(row, 2)));
+                        }
+                        expected = row.getInteger(0) + 1;
+                    }
+                    if (content == null || expected != revision + 1) {
+                        return new JsonObject().put("found", false);
+                    }
+                    return new JsonObject()
+                            .put("found", true)
+                            .put("id", id)
+                            .put("revision", revision)
+                            .put("content", content);
+                })
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        query(SqlQuery.PAGE_REVISIONS, Tuple.of(id, limit))
+                .flatMapPublisher(Flowable::fromIterable)
+                .map(row -> new JsonObject()
+                        .put("revision", row.getInteger(0))
+                        .put("snapshot", row.getBoolean(1))
+                        .put("createdAt", row.getLong(2)))
+                .collect(JsonArray::new, JsonArray::add)
+                .subscribe(SingleHelper.toObserver(resultHandler));
         return this;
     }
 
     @Override
     public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(id);
-        dbClient.rxUpdateWithParams(sqlQueries.get(SqlQuery.DELETE_PAGE), data)
+        inTransaction(conn -> conn.preparedQuery(sqlQueries.get(SqlQuery.DELETE_PAGE_REVISIONS)).rxExecute(Tuple.of(id))
+                .flatMap(rows -> conn.preparedQuery(sqlQueries.get(SqlQuery.DELETE_PAGE)).rxExecute(Tuple.of(id))))
+                .doOnSuccess(rows -> {
+                    nameIndex.remove(id);
+                    searchIndex.remove(id);
+                })
                 .ignoreElement()
                 .subscribe(CompletableHelper.toObserver(resultHandler));
         return this;
@@ -107,9 +418,258 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
     @Override
     public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
-        dbClient.rxQuery(sqlQueries.get(SqlQuery.ALL_PAGES_DATA))
-                .map(ResultSet::getRows)
+        pool.query(sqlQueries.get(SqlQuery.ALL_PAGES_DATA)).rxExecute()
+                .map(rows -> {
+                    List<JsonObject> pages = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        pages.add(new JsonObject()
+                                .put("ID", row.getInteger(0))
+                                .put("NAME", row.getString(1))
+                                .put("CONTENT", content(row, 2)));
+                    }
+                    return pages;
+                })
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(nameIndex.withPrefix(prefix, limit)));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        JsonArray hits = searchIndex.search(query, limit);
+        for (int i = 0; i < hits.size(); i++) {
+            JsonObject hit = hits.getJsonObject(i);
+            hit.put("name", nameIndex.name(hit.getInteger("id")));
+        }
+        resultHandler.handle(Future.succeededFuture(hits));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler) {
+        int chunks = (pages.size() + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+        Flowable.range(0, chunks)
+                .concatMapSingle(chunk -> upsertChunk(pages, chunk * BATCH_CHUNK_SIZE,
+                        Math.min(pages.size(), (chunk + 1) * BATCH_CHUNK_SIZE)))
+                .collect(JsonArray::new, JsonArray::addAll)
                 .subscribe(SingleHelper.toObserver(resultHandler));
         return this;
     }
+
+    /**
+     * Upserts {@code pages[from, to)} by name in a single transaction. The pages table is locked
+     * first, so that which names exist is read from committed pages that cannot change until the
+     * chunk commits. Updates go in one JDBC batch; inserts are made one at a time, since a JDBC
+     * batch only reports the first generated key. Items of a chunk that fails to commit are
+     * reported as failed rather than failing the whole call, so earlier chunks stay committed.
+     */
+    private Single<JsonArray> upsertChunk(List<JsonObject> pages, int from, int to) {
+        JsonObject[] results = new JsonObject[to - from];
+        Map<String, Integer> latest = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            JsonObject page = pages.get(i);
+            Object name = page.getValue("name");
+            if (!(name instanceof String) || !(page.getValue("markdown") instanceof String)) {
+                results[i - from] = upsertResult(i, name instanceof String ? (String) name : null, "invalid");
+                continue;
+            }
+            Integer previous = latest.put((String) name, i);
+            if (previous != null) {
+                results[previous - from] = upsertResult(previous, (String) name, "skipped");
+            }
+        }
+        if (latest.isEmpty()) {
+            return Single.just(new JsonArray(Arrays.asList(results)));
+        }
+
+        List<Integer> updated = new ArrayList<>();
+        List<Tuple> updateParams = new ArrayList<>();
+        Map<Integer, Integer> created = new LinkedHashMap<>();
+        return inTransaction(conn -> conn
+                .preparedQuery(sqlQueries.get(SqlQuery.LOCK_PAGES)).rxExecute()
+                .flatMapCompletable(locked -> Flowable.fromIterable(latest.entrySet())
+                        .concatMapCompletable(entry -> {
+                            String markdown = pages.get(entry.getValue()).getString("markdown");
+                            return conn.preparedQuery(sqlQueries.get(SqlQuery.GET_PAGE_ID)).rxExecute(Tuple.of(entry.getKey()))
+                                    .flatMapCompletable(rows -> {
+                                        Row existing = first(rows);
+                                        if (existing != null) {
+                                            updated.add(entry.getValue());
+                                            updateParams.add(addContent(Tuple.tuple(), markdown).addInteger(existing.getInteger(0)));
+                                            return Completable.complete();
+                                        }
+                                        return conn.preparedQuery(sqlQueries.get(SqlQuery.CREATE_PAGE))
+                                                .rxExecute(addContent(Tuple.of(entry.getKey()), markdown))
+                                                .map(this::generatedId)
+                                                .doOnSuccess(id -> created.put(entry.getValue(), id))
+                                                .ignoreElement();
+                                    });
+                        }))
+                .andThen(Single.defer(() -> batch(conn, SqlQuery.SAVE_PAGE, updateParams)))
+                .flatMap(updateCounts -> {
+                    List<Tuple> snapshots = new ArrayList<>();
+                    for (Tuple update : updateParams) {
+                        snapshots.add(Tuple.of(update.getInteger(2)));
+                    }
+                    for (int id : created.values()) {
+                        snapshots.add(Tuple.of(id));
+                    }
+                    return batch(conn, SqlQuery.SNAPSHOT_REVISION, snapshots).map(v -> updateCounts);
+                }))
+                .map(updateCounts -> {
+                    for (int k = 0; k < updated.size(); k++) {
+                        int index = updated.get(k);
+                        JsonObject page = pages.get(index);
+                        int id = updateParams.get(k).getInteger(2);
+                        if (updateCounts.get(k) > 0) {
+                            searchIndex.index(id, page.getString("name"), page.getString("markdown"));
+                            results[index - from] = upsertResult(index, page.getString("name"), "updated").put("id", id);
+                        } else {
+                            results[index - from] = upsertResult(index, page.getString("name"), "failed")
+                                    .put("error", "Page was deleted concurrently");
+                        }
+                    }
+                    for (Map.Entry<Integer, Integer> entry : created.entrySet()) {
+                        int index = entry.getKey();
+                        int id = entry.getValue();
+                        String name = pages.get(index).getString("name");
+                        nameIndex.add(id, name);
+                        searchIndex.index(id, name, pages.get(index).getString("markdown"));
+                        results[index - from] = upsertResult(index, name, "created").put("id", id);
+                    }
+                    return new JsonArray(Arrays.asList(results));
+                })
+                .onErrorReturn(t -> {
+                    for (int index : latest.values()) {
+                        if (results[index - from] == null) {
+                            results[index - from] = upsertResult(index, pages.get(index).getString("name"), "failed")
+                                    .put("error", t.getMessage());
+                        }
+                    }
+                    return new JsonArray(Arrays.asList(results));
+                });
+    }
+
+    @Override
+    public WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler) {
+        DeliveryOptions options = new DeliveryOptions().setSendTimeout(EXPORT_ACK_TIMEOUT);
+        if (LocalJsonCodec.register(vertx.getDelegate())) {
+            options.setCodecName(LocalJsonCodec.NAME);
+        }
+        exportBatches(address, Math.max(1, batchSize), options, -1, 0)
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    /**
+     * Reads the batch of pages following {@code afterId} and sends it, reading the next one only
+     * once the receiver has acknowledged it. The position in the table is kept as the last id sent
+     * rather than as an SQL cursor: the JDBC pool materialises a whole result set on the first
+     * cursor read, and no connection or transaction is held while the receiver is busy.
+     */
+    private Single<Integer> exportBatches(String address, int batchSize, DeliveryOptions options, int afterId, int exported) {
+        return query(SqlQuery.EXPORT_PAGES, Tuple.of(afterId, batchSize)).flatMap(rows -> {
+            JsonArray batch = new JsonArray(new ArrayList<>(rows.size()));
+            int lastId = afterId;
+            for (Row row : rows) {
+                lastId = row.getInteger(0);
+                batch.add(new JsonObject()
+                        .put("id", lastId)
+                        .put("name", row.getString(1))
+                        .put("markdown", content(row, 2))
+                        .put("version", row.getInteger(4)));
+            }
+            if (batch.isEmpty()) {
+                return Single.just(exported);
+            }
+            int last = lastId;
+            int total = exported + batch.size();
+            return vertx.eventBus().rxRequest(address, batch, options)
+                    .flatMap(ack -> batch.size() < batchSize
+                            ? Single.just(total)
+                            : exportBatches(address, batchSize, options, last, total));
+        });
+    }
+
+    /**
+     * Executes one batch and returns the update count of each of its statements. PostgreSQL answers
+     * with a result per statement, while the JDBC pool answers with a single result holding one
+     * column-less row per statement, whose value is the update count.
+     */
+    private Single<List<Integer>> batch(SqlConnection conn, SqlQuery query, List<Tuple> params) {
+        if (params.isEmpty()) {
+            return Single.just(Collections.emptyList());
+        }
+        return conn.preparedQuery(sqlQueries.get(query)).rxExecuteBatch(params)
+                .map(rows -> {
+                    List<Integer> counts = new ArrayList<>(params.size());
+                    List<String> columns = rows.columnsNames();
+                    if ((columns == null || columns.isEmpty()) && rows.size() == params.size() && rows.next() == null) {
+                        for (Row row : rows) {
+                            counts.add(row.getInteger(0));
+                        }
+                        return counts;
+                    }
+                    for (RowSet<Row> result = rows; result != null; result = result.next()) {
+                        counts.add(result.rowCount());
+                    }
+                    return counts;
+                });
+    }
+
+    private JsonObject upsertResult(int index, String name, String status) {
+        return new JsonObject()
+                .put("index", index)
+                .put("name", name)
+                .put("status", status);
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        query(SqlQuery.PAGE_SUMMARIES, Tuple.of(afterId, limit))
+                .flatMapPublisher(Flowable::fromIterable)
+                .map(row -> new JsonObject()
+                        .put("id", row.getInteger(0))
+                        .put("name", row.getString(1)))
+                .collect(JsonArray::new, JsonArray::add)
+                .subscribe(SingleHelper.toObserver(resultHandler));
+        return this;
+    }
+
+    private Single<RowSet<Row>> query(SqlQuery query, Tuple params) {
+        return pool.preparedQuery(sqlQueries.get(query)).rxExecute(params);
+    }
+
+    private <T> Single<T> withConnection(io.reactivex.functions.Function<SqlConnection, Single<T>> function) {
+        return pool.rxWithConnection((io.reactivex.functions.Function<SqlConnection, Maybe<T>>) conn -> function.apply(conn).toMaybe())
+                .toSingle();
+    }
+
+    private <T> Single<T> inTransaction(io.reactivex.functions.Function<SqlConnection, Single<T>> function) {
+        return pool.rxWithTransaction((io.reactivex.functions.Function<SqlConnection, Maybe<T>>) conn -> function.apply(conn).toMaybe())
+                .toSingle();
+    }
+
+    private Row first(RowSet<Row> rows) {
+        Iterator<Row> iterator = rows.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * The id of an inserted page: PostgreSQL returns it as a row ({@code returning id}) while the
+     * JDBC pool exposes the generated keys as a property of the result.
+     */
+    private int generatedId(RowSet<Row> rows) {
+        Row row = first(rows);
+        if (row != null) {
+            return row.getInteger(0);
+        }
+        io.vertx.sqlclient.RowSet<?> result = rows.getDelegate();
+        return result.property(JDBCPool.GENERATED_KEYS).getInteger(0);
+    }
 }
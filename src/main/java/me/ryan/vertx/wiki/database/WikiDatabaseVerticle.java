@@ -1,15 +1,26 @@
 package me.ryan.vertx.wiki.database;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.jdbc.JDBCClient;
-import io.vertx.serviceproxy.ServiceBinder;
+import io.vertx.jdbcclient.JDBCPool;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.serviceproxy.HelperUtils;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import me.ryan.vertx.wiki.metrics.EventBusMetrics;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 
 import static me.ryan.vertx.wiki.DatabaseConstants.*;
@@ -18,20 +29,108 @@ public class WikiDatabaseVerticle extends AbstractVerticle {
 
     public static final String CONFIG_WIKIDB_SQL_QUERIES_RESOURCE_FILE = "wikidb.sqlqueries.resource.file";
     public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+    public static final String CONFIG_WIKIDB_LOCAL_CODEC = "wikidb.local-codec";
+    public static final String CONFIG_WIKIDB_WRITE_BEHIND_MS = "wikidb.write-behind.ms";
+    /**
+     * How page content is stored: {@code none}, as text, or {@code deflate}, compressed in a binary
+     * column, to which the content of existing pages is moved when the verticle starts.
+     */
+    public static final String CONFIG_WIKIDB_CONTENT_COMPRESSION = "wikidb.content.compression";
+    public static final String CONTENT_COMPRESSION_NONE = "none";
+    public static final String CONTENT_COMPRESSION_DEFLATE = "deflate";
+
+    public static final String CONFIG_WIKIDB_READ_YOUR_WRITES_MS = "wikidb.read-your-writes.ms";
+    /**
+     * Number of shards the pages are split into, each served by its own verticle from its own
+     * database, and the shard a verticle serves.
+     */
+    public static final String CONFIG_WIKIDB_SHARDS = "wikidb.shards";
+    public static final String CONFIG_WIKIDB_SHARD = "wikidb.shard";
+    /**
+     * Header of database service requests naming the client they are made for, so that a client
+     * reads its own writes when reads are served by replicas, and its saves are announced as its.
+     */
+    public static final String CLIENT_HEADER = "client";
+
+    private static final String JDBC_POOL_NAME = "wikidb";
+    private static final String SAVE_PAGE_ACTION = "savePage";
+    private static final long DEFAULT_READ_YOUR_WRITES_MS = 5000;
+
+    private Pool pool;
+    private final List<Pool> replicaPools = new ArrayList<>();
+    private final List<String> poolMetrics = new ArrayList<>();
+    private WriteBehindWikiDatabaseService writeBehind;
+    private EventBusMetrics eventBusMetrics;
+
+    /**
+     * The address of a shard of the database service bound at {@code address}, which is the
+     * address itself when the pages are not sharded.
+     */
+    public static String shardAddress(String address, int shard, int shards) {
+        return shards > 1 ? address + "." + shard : address;
+    }
 
     @Override
     public void start(Promise<Void> promise) throws Exception {
         HashMap<SqlQuery, String> sqlQueries = loadSqlQueries();
+        MetricsRegistry metrics = MetricsRegistry.get(vertx);
+        boolean pg = BACKEND_PG.equals(config().getString(CONFIG_WIKIDB_BACKEND, BACKEND_JDBC));
+        int shards = config().getInteger(CONFIG_WIKIDB_SHARDS, 1);
+        int shard = config().getInteger(CONFIG_WIKIDB_SHARD, 0);
+        if (shards > 1) {
+            if (pg) {
+                promise.fail("Sharding is only supported by the JDBC backend");
+                return;
+            }
+            // shard n allocates the ids congruent to n, so an id alone tells which shard holds the page
+            sqlQueries.put(SqlQuery.CREATE_PAGES_TABLE, String.format(sqlQueries.get(SqlQuery.CREATE_SHARDED_PAGES_TABLE), shard, shards));
+        }
+        String compression = config().getString(CONFIG_WIKIDB_CONTENT_COMPRESSION, CONTENT_COMPRESSION_NONE);
+        if (!CONTENT_COMPRESSION_NONE.equals(compression) && !CONTENT_COMPRESSION_DEFLATE.equals(compression)) {
+            promise.fail("Unknown content compression: " + compression);
+            return;
+        }
+        String address = shardAddress(CONFIG_WIKIDB_QUEUE, shard, shards);
+        pool = createPool(metrics, shard, shards);
+        // replicas share the queries of the primary, so they are only read with the JDBC backend
+        JsonArray replicaUrls = pg || shards > 1
+                ? new JsonArray() : config().getJsonArray(CONFIG_WIKIDB_JDBC_REPLICA_URLS, new JsonArray());
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicaPools.add(createJdbcPool(replicaUrls.getString(i), JDBC_POOL_NAME + "-replica-" + i, metrics));
+        }
 
-        JDBCClient dbClient = JDBCClient.createShared(vertx, new JsonObject()
-        .put("url", config().getString(CONFIG_WIKIDB_JDBC_URL, DEFAULT_WIKIDB_JDBC_URL))
-        .put("driver_class", config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, DEFAULT_WIKIDB_JDBC_DRIVER_CLASS))
-        .put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, DEFAULT_JDBC_MAX_POOL_SIZE)));
-
-        WikiDatabaseService.create(dbClient, sqlQueries, ready -> {
+        WikiDatabaseService.create(vertx, pool, sqlQueries, CONTENT_COMPRESSION_DEFLATE.equals(compression), ready -> {
             if (ready.succeeded()) {
-                ServiceBinder binder = new ServiceBinder(vertx);
-                binder.setAddress(CONFIG_WIKIDB_QUEUE).register(WikiDatabaseService.class, ready.result());
+                eventBusMetrics = EventBusMetrics.install(vertx, address, metrics);
+                writeBehind = new WriteBehindWikiDatabaseService(new MeteredWikiDatabaseService(ready.result(), metrics),
+                        vertx, config().getLong(CONFIG_WIKIDB_WRITE_BEHIND_MS, 0L), metrics);
+                WikiDatabaseService service = writeBehind;
+                // replies are handed to local callers by reference instead of being copied
+                boolean byReference = config().getBoolean(CONFIG_WIKIDB_LOCAL_CODEC, true) && LocalJsonCodec.register(vertx);
+                WikiDatabaseServiceVertxProxyHandler primaryHandler = new WikiDatabaseServiceVertxProxyHandler(vertx, service);
+                WikiDatabaseServiceVertxProxyHandler replicaHandler = primaryHandler;
+                if (!replicaPools.isEmpty()) {
+                    List<WikiDatabaseService> replicas = new ArrayList<>();
+                    for (Pool replicaPool : replicaPools) {
+                        replicas.add(new MeteredWikiDatabaseService(new WikiDatabaseServiceImpl(vertx, replicaPool, sqlQueries), metrics));
+                    }
+                    replicaHandler = new WikiDatabaseServiceVertxProxyHandler(vertx, new ReplicaWikiDatabaseService(service, replicas));
+                }
+                WikiDatabaseServiceVertxProxyHandler readHandler = replicaHandler;
+                ReadYourWrites consistency = new ReadYourWrites(config().getLong(CONFIG_WIKIDB_READ_YOUR_WRITES_MS, DEFAULT_READ_YOUR_WRITES_MS));
+                vertx.eventBus().<JsonObject>consumer(address, message -> {
+                    WikiDatabaseServiceVertxProxyHandler handler = readHandler != primaryHandler && consistency.needsPrimary(message)
+                            ? primaryHandler : readHandler;
+                    Message<JsonObject> request = byReference ? LocalJsonCodec.replyingByReference(message) : message;
+                    if (SAVE_PAGE_ACTION.equals(message.headers().get("action"))) {
+                        // saves are announced with the client that made them, which only the headers name
+                        JsonObject body = message.body();
+                        writeBehind.savePage(body.getInteger("id"), body.getString("markdown"),
+                                message.headers().get(CLIENT_HEADER), HelperUtils.createHandler(request, false));
+                    } else {
+                        handler.handle(request);
+                    }
+                });
                 promise.complete();
             } else {
                 promise.fail(ready.cause());
@@ -39,13 +138,78 @@ public class WikiDatabaseVerticle extends AbstractVerticle {
         });
     }
 
+    @Override
+    public void stop(Promise<Void> promise) {
+        Future<Void> flushed = writeBehind != null ? writeBehind.flushAll() : Future.succeededFuture();
+        flushed.onComplete(v -> {
+            if (eventBusMetrics != null) {
+                eventBusMetrics.uninstall();
+            }
+            replicaPools.forEach(Pool::close);
+            pool.close(closed -> {
+                poolMetrics.forEach(MeteredDataSourceProvider::unbind);
+                promise.handle(closed);
+            });
+        });
+    }
+
+    /**
+     * Creates the pool of the configured backend: the JDBC pool, whose blocking calls run on worker
+     * threads, or the reactive PostgreSQL pool, which pipelines queries over its connections. Each
+     * shard has its own database, named after the configured one.
+     */
+    private Pool createPool(MetricsRegistry metrics, int shard, int shards) {
+        if (BACKEND_PG.equals(config().getString(CONFIG_WIKIDB_BACKEND, BACKEND_JDBC))) {
+            PgConnectOptions connectOptions = new PgConnectOptions()
+                    .setHost(config().getString(CONFIG_WIKIDB_PG_HOST, DEFAULT_WIKIDB_PG_HOST))
+                    .setPort(config().getInteger(CONFIG_WIKIDB_PG_PORT, DEFAULT_WIKIDB_PG_PORT))
+                    .setDatabase(config().getString(CONFIG_WIKIDB_PG_DATABASE, DEFAULT_WIKIDB_PG_DATABASE))
+                    .setUser(config().getString(CONFIG_WIKIDB_PG_USER, DEFAULT_WIKIDB_PG_USER))
+                    .setPassword(config().getString(CONFIG_WIKIDB_PG_PASSWORD, DEFAULT_WIKIDB_PG_PASSWORD))
+                    .setPipeliningLimit(config().getInteger(CONFIG_WIKIDB_PG_PIPELINING_LIMIT, DEFAULT_PG_PIPELINING_LIMIT))
+                    .setCachePreparedStatements(true);
+            PoolOptions poolOptions = new PoolOptions()
+                    .setMaxSize(config().getInteger(CONFIG_WIKIDB_PG_MAX_POOL_SIZE, DEFAULT_PG_MAX_POOL_SIZE));
+            return PgPool.pool(vertx, connectOptions, poolOptions);
+        }
+
+        String url = config().getString(CONFIG_WIKIDB_JDBC_URL, DEFAULT_WIKIDB_JDBC_URL);
+        if (shards <= 1) {
+            return createJdbcPool(url, JDBC_POOL_NAME, metrics);
+        }
+        int properties = url.indexOf(';');
+        String shardUrl = properties < 0
+                ? url + "-" + shard
+                : url.substring(0, properties) + "-" + shard + url.substring(properties);
+        return createJdbcPool(shardUrl, JDBC_POOL_NAME + "-" + shard, metrics);
+    }
+
+    /**
+     * Creates a JDBC pool whose metrics are labelled with {@code poolName}. Read replicas use the
+     * same driver and pool settings as the primary.
+     */
+    private Pool createJdbcPool(String url, String poolName, MetricsRegistry metrics) {
+        String metricsKey = MeteredDataSourceProvider.bind(poolName, metrics);
+        poolMetrics.add(metricsKey);
+        return JDBCPool.pool(vertx, new JsonObject()
+        .put("url", url)
+        .put("driver_class", config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, DEFAULT_WIKIDB_JDBC_DRIVER_CLASS))
+        .put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, DEFAULT_JDBC_MAX_POOL_SIZE))
+        // every connection keeps its prepared statements, so each query is only parsed and planned once per connection
+        .put("max_statements_per_connection", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_STATEMENTS_PER_CONNECTION,
+                DEFAULT_JDBC_MAX_STATEMENTS_PER_CONNECTION))
+        .put("provider_class", MeteredDataSourceProvider.class.getName())
+        .put(MeteredDataSourceProvider.CONFIG_POOL_NAME, metricsKey));
+    }
+
     private HashMap<SqlQuery, String> loadSqlQueries() throws IOException {
         String queriesFile = config().getString(CONFIG_WIKIDB_SQL_QUERIES_RESOURCE_FILE);
         InputStream queriesInputStream;
         if (queriesFile != null) {
             queriesInputStream = new FileInputStream(queriesFile);
         } else {
-            queriesInputStream = getClass().getResourceAsStream("/db-queries.properties");
+            boolean pg = BACKEND_PG.equals(config().getString(CONFIG_WIKIDB_BACKEND, BACKEND_JDBC));
+            queriesInputStream = getClass().getResourceAsStream(pg ? "/db-queries-pg.properties" : "/db-queries.properties");
         }
 
         Properties queriesProps = new Properties();
@@ -54,13 +218,37 @@ public class WikiDatabaseVerticle extends AbstractVerticle {
 
         HashMap<SqlQuery, String> sqlQueries = new HashMap<>();
         sqlQueries.put(SqlQuery.CREATE_PAGES_TABLE, queriesProps.getProperty("create-pages-table"));
+        sqlQueries.put(SqlQuery.CREATE_SHARDED_PAGES_TABLE, queriesProps.getProperty("create-sharded-pages-table"));
+        sqlQueries.put(SqlQuery.ADD_PAGES_VERSION, queriesProps.getProperty("add-pages-version"));
+        sqlQueries.put(SqlQuery.ADD_PAGES_UPDATED_AT, queriesProps.getProperty("add-pages-updated-at"));
+        sqlQueries.put(SqlQuery.ADD_PAGES_COMPRESSED_CONTENT, queriesProps.getProperty("add-pages-compressed-content"));
         sqlQueries.put(SqlQuery.ALL_PAGES, queriesProps.getProperty("all-pages"));
         sqlQueries.put(SqlQuery.GET_PAGE, queriesProps.getProperty("get-page"));
+        sqlQueries.put(SqlQuery.GET_PAGE_ID, queriesProps.getProperty("get-page-id"));
         sqlQueries.put(SqlQuery.GET_PAGE_BY_ID, queriesProps.getProperty("get-page-by-id"));
+        sqlQueries.put(SqlQuery.GET_PAGE_VERSION, queriesProps.getProperty("get-page-version"));
         sqlQueries.put(SqlQuery.CREATE_PAGE, queriesProps.getProperty("create-page"));
         sqlQueries.put(SqlQuery.SAVE_PAGE, queriesProps.getProperty("save-page"));
         sqlQueries.put(SqlQuery.DELETE_PAGE, queriesProps.getProperty("delete-page"));
         sqlQueries.put(SqlQuery.ALL_PAGES_DATA, queriesProps.getProperty("all-pages-data"));
+        sqlQueries.put(SqlQuery.PAGE_SUMMARIES, queriesProps.getProperty("page-summaries"));
+        sqlQueries.put(SqlQuery.LOCK_PAGES, queriesProps.getProperty("lock-pages"));
+        sqlQueries.put(SqlQuery.CREATE_REVISIONS_TABLE, queriesProps.getProperty("create-revisions-table"));
+        sqlQueries.put(SqlQuery.ADD_REVISIONS_COMPRESSED_CONTENT, queriesProps.getProperty("add-revisions-compressed-content"));
+        sqlQueries.put(SqlQuery.GET_PAGE_HEAD, queriesProps.getProperty("get-page-head"));
+        sqlQueries.put(SqlQuery.UPDATE_PAGE_IF_VERSION, queriesProps.getProperty("update-page-if-version"));
+        sqlQueries.put(SqlQuery.INSERT_REVISION, queriesProps.getProperty("insert-revision"));
+        sqlQueries.put(SqlQuery.SNAPSHOT_REVISION, queriesProps.getProperty("snapshot-revision"));
+        sqlQueries.put(SqlQuery.REVISION_STATE, queriesProps.getProperty("revision-state"));
+        sqlQueries.put(SqlQuery.REVISION_CHAIN, queriesProps.getProperty("revision-chain"));
+        sqlQueries.put(SqlQuery.PAGE_REVISIONS, queriesProps.getProperty("page-revisions"));
+        sqlQueries.put(SqlQuery.DELETE_PAGE_REVISIONS, queriesProps.getProperty("delete-page-revisions"));
+        sqlQueries.put(SqlQuery.EXPORT_PAGES, queriesProps.getProperty("export-pages"));
+        sqlQueries.put(SqlQuery.UNCOMPRESSED_PAGES, queriesProps.getProperty("uncompressed-pages"));
+        sqlQueries.put(SqlQuery.COMPRESS_PAGE, queriesProps.getProperty("compress-page"));
+        sqlQueries.put(SqlQuery.CREATE_SCHEMA_VERSION_TABLE, queriesProps.getProperty("create-schema-version-table"));
+        sqlQueries.put(SqlQuery.GET_SCHEMA_VERSION, queriesProps.getProperty("get-schema-version"));
+        sqlQueries.put(SqlQuery.SET_SCHEMA_VERSION, queriesProps.getProperty("set-schema-version"));
         return sqlQueries;
     }
 }
@@ -0,0 +1,262 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import me.ryan.vertx.wiki.metrics.Counter;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates a {@link WikiDatabaseService} with a write-behind buffer for {@link #savePage}. Saves
+ * of the same page made within {@code window} milliseconds of the first one are coalesced into a
+ * single update of the latest content; every coalesced save is acknowledged once that update has
+ * committed, and one {@code page.saved} event is published per successful update. The event names
+ * the client given to {@link #savePage(int, String, String, Handler)} for the last coalesced save,
+ * whose content is the one written, so that its browser does not apply its own save back. With a
+ * window of zero each save is written straight away, and still announced here.
+ * <p>
+ * At most one update per page is in flight, so coalesced updates never conflict with each other.
+ * Operations that read or change a page wait until its buffered content has been written, and
+ * operations that may touch any page wait for every buffered save. Instances are confined to the
+ * event loop of the database verticle.
+ */
+class WriteBehindWikiDatabaseService implements WikiDatabaseService {
+
+    static final String PAGE_SAVED_ADDRESS = "page.saved";
+
+    private final WikiDatabaseService delegate;
+    private final Vertx vertx;
+    private final long window;
+    private final Counter coalesced;
+    private final Map<Integer, PendingPage> pending = new HashMap<>();
+
+    WriteBehindWikiDatabaseService(WikiDatabaseService delegate, Vertx vertx, long window, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.vertx = vertx;
+        this.window = window;
+        this.coalesced = metrics.counter("wikidb_saves_coalesced_total",
+                "Page saves merged into a later save of the same page before being written");
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        savePage(id, markdown, null, resultHandler);
+        return this;
+    }
+
+    /**
+     * Saves a page for {@code client}, the client named by the {@link WikiDatabaseVerticle#CLIENT_HEADER}
+     * header of the request, if any.
+     */
+    void savePage(int id, String markdown, String client, Handler<AsyncResult<Void>> resultHandler) {
+        PendingPage page = pending.computeIfAbsent(id, key -> new PendingPage());
+        if (page.markdown != null) {
+            coalesced.increment();
+        }
+        page.markdown = markdown;
+        page.client = client;
+        page.acknowledgements.add(resultHandler);
+        if (window <= 0) {
+            flush(id);
+        } else if (!page.writing && page.timer < 0) {
+            page.timer = vertx.setTimer(window, timer -> {
+                page.timer = -1;
+                flush(id);
+            });
+        }
+    }
+
+    /**
+     * Writes every buffered save now, completing once they have all been written.
+     */
+    Future<Void> flushAll() {
+        Promise<Void> promise = Promise.promise();
+        whenAllWritten(() -> promise.complete());
+        return promise.future();
+    }
+
+    private void flush(int id) {
+        PendingPage page = pending.get(id);
+        if (page == null || page.writing) {
+            return;
+        }
+        if (page.timer >= 0) {
+            vertx.cancelTimer(page.timer);
+            page.timer = -1;
+        }
+        if (page.markdown == null) {
+            pending.remove(id);
+            page.runWaiting();
+            return;
+        }
+        String markdown = page.markdown;
+        String savedBy = page.client;
+        List<Handler<AsyncResult<Void>>> acknowledgements = page.acknowledgements;
+        page.markdown = null;
+        page.client = null;
+        page.acknowledgements = new ArrayList<>();
+        page.writing = true;
+        Promise<Void> saved = Promise.promise();
+        delegate.savePage(id, markdown, saved);
+        // the save of a page that does not exist fails, so only pages that changed are announced
+        saved.future().onSuccess(v -> vertx.eventBus().publish(PAGE_SAVED_ADDRESS,
+                new JsonObject().put("id", id).put("client", savedBy))).onComplete(ar -> {
+            page.writing = false;
+            acknowledgements.forEach(handler -> handler.handle(ar));
+            if (page.markdown == null || !page.waiting.isEmpty() || window <= 0) {
+                flush(id);
+            } else if (page.timer < 0) {
+                page.timer = vertx.setTimer(window, timer -> {
+                    page.timer = -1;
+                    flush(id);
+                });
+            }
+        });
+    }
+
+    private void whenWritten(int id, Runnable operation) {
+        PendingPage page = pending.get(id);
+        if (page == null) {
+            operation.run();
+            return;
+        }
+        page.waiting.add(operation);
+        flush(id);
+    }
+
+    private void whenAllWritten(Runnable operation) {
+        if (pending.isEmpty()) {
+            operation.run();
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(pending.keySet());
+        int[] remaining = {ids.size()};
+        for (int id : ids) {
+            whenWritten(id, () -> {
+                if (--remaining[0] == 0) {
+                    operation.run();
+                }
+            });
+        }
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchAllPages(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        whenAllWritten(() -> delegate.fetchPage(name, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        whenWritten(id, () -> delegate.fetchPageById(id, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageVersion(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        whenWritten(id, () -> delegate.fetchPageVersion(id, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchListingVersion(Handler<AsyncResult<String>> resultHandler) {
+        delegate.fetchListingVersion(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.createPage(title, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler) {
+        whenWritten(id, () -> delegate.patchPage(id, baseRevision, edits, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevision(int id, int revision, Handler<AsyncResult<JsonObject>> resultHandler) {
+        whenWritten(id, () -> delegate.fetchPageRevision(id, revision, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageRevisions(int id, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        whenWritten(id, () -> delegate.fetchPageRevisions(id, limit, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+        whenWritten(id, () -> delegate.deletePage(id, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        whenAllWritten(() -> delegate.fetchAllPagesData(resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageSummaries(int afterId, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchPageSummaries(afterId, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPageNames(String prefix, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.searchPageNames(prefix, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService searchPages(String query, int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        whenAllWritten(() -> delegate.searchPages(query, limit, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService batchUpsertPages(List<JsonObject> pages, Handler<AsyncResult<JsonArray>> resultHandler) {
+        whenAllWritten(() -> delegate.batchUpsertPages(pages, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService exportPages(String address, int batchSize, Handler<AsyncResult<Integer>> resultHandler) {
+        whenAllWritten(() -> delegate.exportPages(address, batchSize, resultHandler));
+        return this;
+    }
+
+    private static final class PendingPage {
+        String markdown;
+        String client;
+        List<Handler<AsyncResult<Void>>> acknowledgements = new ArrayList<>();
+        final List<Runnable> waiting = new ArrayList<>();
+        long timer = -1;
+        boolean writing;
+
+        void runWaiting() {
+            List<Runnable> operations = new ArrayList<>(waiting);
+            waiting.clear();
+            operations.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import me.ryan.vertx.wiki.metrics.Counter;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits API requests before they queue work on the database service. Each client IP address
+ * draws from a token bucket refilled at {@code ratePerSecond} up to {@code burst} requests, and
+ * requests beyond it are answered {@code 429}. Independently, at most {@code maxInFlight} API
+ * requests are served at once, across every {@link HttpServerVerticle} instance; a request over
+ * the cap is answered {@code 503} at once instead of waiting behind the database queue. Both
+ * answers carry a {@code Retry-After} header.
+ * <p>
+ * A bucket is kept as the single time at which it will be full again (the generic cell rate
+ * algorithm), so it is updated with one compare-and-set and no lock. Full buckets are forgotten
+ * by a periodic sweep.
+ */
+final class AdmissionControl implements Shareable {
+
+    private static final String LOCAL_MAP = "wiki.http.admission-control";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+    private static final long OVERLOADED_RETRY_AFTER_S = 1;
+
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final int maxInFlight;
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    private AdmissionControl(double ratePerSecond, int burst, int maxInFlight, MetricsRegistry metrics) {
+        this.emissionInterval = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        this.burstTolerance = emissionInterval * Math.max(burst - 1, 0);
+        this.maxInFlight = maxInFlight;
+        rateLimited = metrics.counter("http_api_rejected_total", "API requests turned away before being served",
+                "reason", "rate_limited");
+        overloaded = metrics.counter("http_api_rejected_total", "API requests turned away before being served",
+                "reason", "overloaded");
+        metrics.gauge("http_api_in_flight", "API requests being served", inFlight::get);
+    }
+
+    /**
+     * The instance shared by every verticle of the given Vert.x instance, configured by the first
+     * caller.
+     */
+    static AdmissionControl get(Vertx vertx, JsonObject config) {
+        LocalMap<String, AdmissionControl> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        AdmissionControl shared = map.get(LOCAL_MAP);
+        if (shared == null) {
+            double rate = config.getDouble(HttpServerVerticle.CONFIG_HTTP_API_RATE_LIMIT, 0.0);
+            AdmissionControl created = new AdmissionControl(rate,
+                    config.getInteger(HttpServerVerticle.CONFIG_HTTP_API_RATE_LIMIT_BURST, (int) Math.max(Math.ceil(rate), 1)),
+                    config.getInteger(HttpServerVerticle.CONFIG_HTTP_API_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT),
+                    MetricsRegistry.get(vertx));
+            shared = map.putIfAbsent(LOCAL_MAP, created);
+            if (shared == null) {
+                shared = created;
+                if (created.emissionInterval > 0) {
+                    vertx.setPeriodic(SWEEP_INTERVAL_MS, id -> created.sweep());
+                }
+            }
+        }
+        return shared;
+    }
+
+    void handle(RoutingContext context) {
+        if (emissionInterval > 0) {
+            long waitNanos = take(context.request().remoteAddress().host(), System.nanoTime());
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                reject(context, 429, "Too many requests", TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1);
+                return;
+            }
+        }
+        if (maxInFlight > 0) {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                overloaded.increment();
+                reject(context, 503, "Server overloaded", OVERLOADED_RETRY_AFTER_S);
+                return;
+            }
+            context.addEndHandler(ended -> inFlight.decrementAndGet());
+        }
+        context.next();
+    }
+
+    /**
+     * Takes a token from the bucket of a client, returning zero, or how long to wait for one when
+     * the bucket is empty.
+     */
+    private long take(String client, long now) {
+        AtomicLong bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        while (true) {
+            long full = bucket.get();
+            long start = full - now > 0 ? full : now;
+            if (start - now > burstTolerance) {
+                return start - now - burstTolerance;
+            }
+            if (bucket.compareAndSet(full, start + emissionInterval)) {
+                return 0;
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    private static void reject(RoutingContext context, int statusCode, String error, long retryAfterSeconds) {
+        context.response()
+                .setStatusCode(statusCode)
+                .putHeader("Retry-After", String.valueOf(retryAfterSeconds))
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("success", false).put("error", error).encode());
+    }
+}
@@ -3,7 +3,7 @@ package me.ryan.vertx.wiki.http;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.Promise;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
@@ -13,18 +13,30 @@ import org.slf4j.LoggerFactory;
 import java.util.Arrays;
 import java.util.List;
 
-import static me.ryan.vertx.wiki.DatabaseConstants.*;
-
 public class AuthInitializerVerticle extends AbstractVerticle {
 
+    // 1: users, their roles and the permissions granted to each role
+    private static final int SCHEMA_VERSION = 1;
+
     private final Logger logger = LoggerFactory.getLogger(AuthInitializerVerticle.class);
 
+    private JDBCClient dbClient;
+
+    /**
+     * Completes once the users can be authenticated, creating their tables first unless the schema
+     * version recorded in the database is current, and seeding them if there are none.
+     */
     @Override
-    public void start() throws Exception {
+    public void start(Promise<Void> promise) throws Exception {
         List<String> schemaCreation = Arrays.asList(
                 "create table if not exists user (username varchar(255), password varchar(255), password_salt varchar(255));",
                 "create table if not exists user_roles (username varchar(255), role varchar(255));",
-                "create table if not exists roles_perms (role varchar(255), perm varchar(255));"
+                "create table if not exists roles_perms (role varchar(255), perm varchar(255));",
+                "create table if not exists schema_version (component varchar(64) primary key, version int not null);",
+                "merge into schema_version using (values ('auth', " + SCHEMA_VERSION + ")) as v (component, version) "
+                        + "on schema_version.component = v.component "
+                        + "when matched then update set schema_version.version = v.version "
+                        + "when not matched then insert values v.component, v.version;"
         );
 
         List<String> dataInit = Arrays.asList(
@@ -45,56 +57,74 @@ public class AuthInitializerVerticle extends AbstractVerticle {
                 "insert into user_roles values ('bar', 'writer');"
         );
 
-        JDBCClient dbClient = JDBCClient.create(vertx, new JsonObject()
-                .put("url", config().getString(CONFIG_WIKIDB_JDBC_URL, DEFAULT_WIKIDB_JDBC_URL))
-                .put("driver_class", config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, DEFAULT_WIKIDB_JDBC_DRIVER_CLASS))
-                .put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, DEFAULT_JDBC_MAX_POOL_SIZE)));
+        dbClient = WikiAuth.client(vertx, config());
 
         dbClient.getConnection(car -> {
             if (car.succeeded()) {
                 SQLConnection connection = car.result();
-                connection.batch(schemaCreation, ar -> schemaCreationHandler(dataInit, connection, ar));
+                connection.querySingle("select version from schema_version where component = 'auth';", vr -> {
+                    // the version table is missing until the schema is first created
+                    if (vr.succeeded() && vr.result() != null && vr.result().getInteger(0) >= SCHEMA_VERSION) {
+                        connection.query("select count(*) from user;", testQueryHandler(dataInit, connection, promise));
+                    } else {
+                        connection.batch(schemaCreation, ar -> schemaCreationHandler(dataInit, connection, ar, promise));
+                    }
+                });
             } else {
                 logger.error("Cannot obtain a database connection", car.cause());
+                promise.fail(car.cause());
             }
         });
     }
 
-    private void schemaCreationHandler(List<String> dataInit, SQLConnection connection, AsyncResult<List<Integer>> ar) {
+    @Override
+    public void stop() {
+        if (dbClient != null) {
+            dbClient.close();
+        }
+    }
+
+    private void schemaCreationHandler(List<String> dataInit, SQLConnection connection, AsyncResult<List<Integer>> ar,
+                                       Promise<Void> promise) {
         if (ar.succeeded()) {
-            connection.query("select count(*) from user;", testQueryHandler(dataInit, connection));
+            connection.query("select count(*) from user;", testQueryHandler(dataInit, connection, promise));
         } else {
             connection.close();
             logger.error("Schema creation failed", ar.cause());
+            promise.fail(ar.cause());
         }
     }
 
-    private Handler<AsyncResult<ResultSet>> testQueryHandler(List<String> dataInit, SQLConnection connection) {
+    private Handler<AsyncResult<ResultSet>> testQueryHandler(List<String> dataInit, SQLConnection connection, Promise<Void> promise) {
         return ar -> {
             if (ar.succeeded()) {
                 if (ar.result().getResults().get(0).getInteger(0) == 0) {
                     logger.info("Need to insert data");
-                    connection.batch(dataInit, batchInsertHandler(connection));
+                    connection.batch(dataInit, batchInsertHandler(connection, promise));
                 } else {
                     logger.info("No need to insert data");
                     connection.close();
+                    promise.complete();
                 }
             } else {
                 connection.close();
                 logger.error("Could not check the number of users in the database", ar.cause());
+                promise.fail(ar.cause());
             }
         };
     }
 
-    private Handler<AsyncResult<List<Integer>>> batchInsertHandler(SQLConnection connection) {
+    private Handler<AsyncResult<List<Integer>>> batchInsertHandler(SQLConnection connection, Promise<Void> promise) {
         return ar -> {
+            connection.close();
             if (ar.succeeded()) {
                 logger.info("Successfully inserted data");
+                vertx.eventBus().publish(WikiAuth.CHANGED_ADDRESS, null);
+                promise.complete();
             } else {
                 logger.error("Could not insert data", ar.cause());
+                promise.fail(ar.cause());
             }
-
-            connection.close();
         };
     }
 }
@@ -0,0 +1,60 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes JSON objects as gzip-compressed NDJSON, one object per line. Each call returns the
+ * compressed bytes produced so far, which may be empty, so the output can be written as it is
+ * produced and only the deflater window is held in memory.
+ */
+final class GzipNdjsonWriter {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+    private final GZIPOutputStream gzip;
+
+    GzipNdjsonWriter() {
+        try {
+            gzip = new GZIPOutputStream(bytes, BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Buffer write(JsonArray objects) {
+        try {
+            for (int i = 0; i < objects.size(); i++) {
+                gzip.write(objects.getJsonObject(i).toBuffer().getBytes());
+                gzip.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return drain();
+    }
+
+    /**
+     * Returns the remaining compressed bytes and the gzip trailer.
+     */
+    Buffer finish() {
+        try {
+            gzip.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return drain();
+    }
+
+    private Buffer drain() {
+        Buffer out = Buffer.buffer(bytes.toByteArray());
+        bytes.reset();
+        return out;
+    }
+}
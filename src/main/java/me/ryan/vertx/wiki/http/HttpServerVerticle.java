@@ -1,102 +1,542 @@
 package me.ryan.vertx.wiki.http;
 
-import com.github.rjeschke.txtmark.Processor;
-import io.reactivex.Flowable;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.Single;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.bridge.PermittedOptions;
 import io.vertx.ext.web.handler.sockjs.SockJSBridgeOptions;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.JksOptions;
+import io.vertx.reactivex.SingleHelper;
 import io.vertx.reactivex.core.AbstractVerticle;
+import io.vertx.reactivex.core.MultiMap;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
 import io.vertx.reactivex.core.http.HttpServer;
+import io.vertx.reactivex.core.http.HttpServerRequest;
+import io.vertx.reactivex.core.http.HttpServerResponse;
+import io.vertx.reactivex.ext.auth.jwt.JWTAuth;
 import io.vertx.reactivex.ext.web.Router;
 import io.vertx.reactivex.ext.web.RoutingContext;
 import io.vertx.reactivex.ext.web.handler.BodyHandler;
 import io.vertx.reactivex.ext.web.handler.FaviconHandler;
+import io.vertx.reactivex.ext.web.handler.JWTAuthHandler;
 import io.vertx.reactivex.ext.web.handler.SessionHandler;
 import io.vertx.reactivex.ext.web.handler.StaticHandler;
+import io.vertx.reactivex.ext.web.handler.sockjs.BridgeEvent;
 import io.vertx.reactivex.ext.web.handler.sockjs.SockJSHandler;
-import io.vertx.reactivex.ext.web.sstore.LocalSessionStore;
+import io.vertx.reactivex.ext.web.sstore.SessionStore;
+import io.vertx.serviceproxy.ServiceException;
+import me.ryan.vertx.wiki.database.ErrorCodes;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
 import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import me.ryan.vertx.wiki.metrics.Histogram;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class HttpServerVerticle extends AbstractVerticle {
 
     public static final String CONFIG_HTTP_SERVER_PORT = "http.server.port";
+    public static final String CONFIG_HTTP_SERVER_INSTANCES = "http.server.instances";
     public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+    public static final String CONFIG_RENDER_CACHE_MAX_BYTES = "http.render-cache.max-bytes";
+    public static final String CONFIG_BACKUP_TIMEOUT = "http.backup.timeout-ms";
+    public static final String CONFIG_HTTP_COMPRESSION = "http.compression.enabled";
+    public static final String CONFIG_HTTP_COMPRESSION_LEVEL = "http.compression.level";
+    public static final String CONFIG_HTTP_COMPRESSION_MIN_BYTES = "http.compression.min-bytes";
+    public static final String CONFIG_HTTP_SERVER_SSL = "http.server.ssl";
+    public static final String CONFIG_HTTP_SERVER_KEYSTORE = "http.server.keystore";
+    public static final String CONFIG_HTTP_SERVER_KEYSTORE_PASSWORD = "http.server.keystore-password";
+    public static final String CONFIG_HTTP_SERVER_HTTP2 = "http.server.http2";
+    public static final String CONFIG_HTTP_SERVER_HTTP2_MAX_STREAMS = "http.server.http2.max-concurrent-streams";
+    public static final String CONFIG_HTTP_SERVER_IDLE_TIMEOUT = "http.server.idle-timeout-s";
+    public static final String CONFIG_HTTP_SERVER_TCP_NO_DELAY = "http.server.tcp.no-delay";
+    public static final String CONFIG_HTTP_SERVER_TCP_KEEP_ALIVE = "http.server.tcp.keep-alive";
+    public static final String CONFIG_HTTP_SERVER_TCP_FAST_OPEN = "http.server.tcp.fast-open";
+    public static final String CONFIG_HTTP_SERVER_TCP_QUICK_ACK = "http.server.tcp.quick-ack";
+    public static final String CONFIG_HTTP_API_RATE_LIMIT = "http.api.rate-limit.per-s";
+    public static final String CONFIG_HTTP_API_RATE_LIMIT_BURST = "http.api.rate-limit.burst";
+    public static final String CONFIG_HTTP_API_MAX_IN_FLIGHT = "http.api.max-in-flight";
+    public static final String CONFIG_HTTP_AUTH = "http.auth.enabled";
+    public static final String CONFIG_HTTP_AUTH_CACHE_TTL = "http.auth.cache.ttl-s";
+    public static final String CONFIG_HTTP_AUTH_CACHE_MAX_ENTRIES = "http.auth.cache.max-entries";
+    public static final String CONFIG_HTTP_AUTH_JWT_SECRET = "http.auth.jwt.secret";
+    public static final String CONFIG_HTTP_AUTH_JWT_EXPIRES = "http.auth.jwt.expires-s";
+    /**
+     * Names of the pages read and rendered before the server listens, and how many times over.
+     */
+    public static final String CONFIG_HTTP_WARMUP_PAGES = "http.warmup.pages";
+    public static final String CONFIG_HTTP_WARMUP_ROUNDS = "http.warmup.rounds";
+
+    private static final long DEFAULT_RENDER_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    private static final int PAGE_LISTING_CHUNK = 500;
+    private static final int DEFAULT_TITLE_SUGGESTIONS = 10;
+    private static final int MAX_TITLE_SUGGESTIONS = 100;
+    private static final int BULK_UPSERT_CHUNK = 500;
+    private static final int DEFAULT_SEARCH_RESULTS = 20;
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final int DEFAULT_REVISIONS = 50;
+    private static final int MAX_REVISIONS = 500;
+    private static final long DEFAULT_BACKUP_TIMEOUT = 60 * 60 * 1000;
+    private static final int BACKUP_BATCH = 200;
+    private static final int MAX_RESTORE_LINE = 64 * 1024 * 1024;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+    private static final long DEFAULT_HTTP2_MAX_STREAMS = 100;
+    private static final String CLIENT_HEADER = "X-Wiki-Client";
+    private static final int MAX_CLIENT_SERVICES = 1024;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerVerticle.class);
 
+    private int dbShards;
     private WikiDatabaseService dbService;
+    private WikiDatabaseService backupService;
+    private RenderCache renderCache;
+    private MetricsRegistry metrics;
+    private final Map<io.vertx.ext.web.handler.sockjs.SockJSSocket, List<Integer>> watchedPages = new HashMap<>();
+    // database services of the most recently seen clients
+    private final Map<String, WikiDatabaseService> clientServices = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WikiDatabaseService> eldest) {
+            return size() > MAX_CLIENT_SERVICES;
+        }
+    };
 
     @Override
     public void start(Promise<Void> promise) throws Exception {
 
         String wikiDbQueue = config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue");
-        dbService = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx.getDelegate(), wikiDbQueue);
+        dbShards = config().getInteger(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARDS, 1);
+        dbService = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx.getDelegate(), wikiDbQueue, dbShards,
+                new DeliveryOptions());
+        // an export only answers once every page has been streamed
+        backupService = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx.getDelegate(), wikiDbQueue, dbShards,
+                new DeliveryOptions().setSendTimeout(config().getLong(CONFIG_BACKUP_TIMEOUT, DEFAULT_BACKUP_TIMEOUT)));
+        metrics = MetricsRegistry.get(vertx.getDelegate());
+        renderCache = new RenderCache(config().getLong(CONFIG_RENDER_CACHE_MAX_BYTES, DEFAULT_RENDER_CACHE_MAX_BYTES), metrics);
 
-        HttpServer server = vertx.createHttpServer();
+        boolean compression = config().getBoolean(CONFIG_HTTP_COMPRESSION, true);
+        HttpServer server = vertx.createHttpServer(serverOptions()
+                .setCompressionSupported(compression)
+                .setCompressionLevel(config().getInteger(CONFIG_HTTP_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL)));
         Router router = Router.router(vertx);
+        if (compression) {
+            long minBytes = config().getLong(CONFIG_HTTP_COMPRESSION_MIN_BYTES, DEFAULT_COMPRESSION_MIN_BYTES);
+            router.route().handler(context -> skipCompressionBelow(context, minBytes));
+        }
+        // overload is turned away before any other work is done for a request
+        AdmissionControl admission = AdmissionControl.get(vertx.getDelegate(), config());
+        router.route("/api/*").handler(context -> admission.handle(context.getDelegate()));
+        router.route("/api/*").failureHandler(this::apiFailed);
+        if (config().getBoolean(CONFIG_HTTP_AUTH, false)) {
+            authorizeApiWrites(router, WikiAuth.get(vertx.getDelegate(), config()));
+        }
+        // restores stream their body, so they are routed before it would be buffered
+        router.post("/api/restore").handler(timed("POST /api/restore", context -> new Restore(context).start()));
         router.route().handler(BodyHandler.create());
-        router.route().handler(SessionHandler.create(LocalSessionStore.create(vertx)));
+        // sessions are only created for the requests that use them
+        router.route().handler(SessionHandler.create(SessionStore.newInstance(SharedSessionStore.get(vertx.getDelegate())))
+                .setLazySession(true));
         router.route().handler(StaticHandler.create());
         router.route().handler(FaviconHandler.create(vertx));
 
         SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
         SockJSBridgeOptions bridgeOptions = new SockJSBridgeOptions()
-                .addInboundPermitted(new PermittedOptions().setAddress("app.markdown"))
-                .addOutboundPermitted(new PermittedOptions().setAddress("page.saved"));
-        sockJSHandler.bridge(bridgeOptions);
+                .addInboundPermitted(new PermittedOptions().setAddress(MarkdownRenderVerticle.RENDER_ADDRESS))
+                .addOutboundPermitted(new PermittedOptions().setAddressRegex(PageUpdatesVerticle.PAGE_ADDRESS_REGEX));
+        sockJSHandler.bridge(bridgeOptions, this::countWatchers);
         router.route("/eventbus/*").handler(sockJSHandler);
-        vertx.eventBus().<String>consumer("app.markdown", msg -> {
-            String html = Processor.process(msg.body());
-            msg.reply(html);
-        });
+        // every instance owns a render cache, so each one listens for the pages to evict from it
+        vertx.eventBus().<JsonObject>consumer("page.saved", msg -> renderCache.invalidate(msg.body().getInteger("id")));
 
-        router.get("/app/*").handler(StaticHandler.create().setCachingEnabled(false));
+        StaticAssets assets = StaticAssets.get(vertx.getDelegate(), "webroot");
+        router.get("/app/*").handler(context -> assets.handle(context.getDelegate()));
         router.get("/").handler(context -> context.reroute("/app/index.html"));
-        router.get("/api/pages").handler(this::apiRoot);
-        router.get("/api/pages/:id").handler(this::apiGetPage);
-        router.post().handler(BodyHandler.create());
-        router.post("/api/pages").handler(this::apiCreatePages);
-        router.put().handler(BodyHandler.create());
-        router.put("/api/pages/:id").handler(this::apiUpdatePage);
-        router.delete("/api/pages/:id").handler(this::apiDeletePage);
+        router.get("/metrics").handler(this::metrics);
+        router.get("/api/pages").handler(timed("GET /api/pages", this::apiRoot));
+        router.get("/api/pages/:id").handler(timed("GET /api/pages/:id", this::apiGetPage));
+        router.get("/api/pages/:id/revisions").handler(timed("GET /api/pages/:id/revisions", this::apiPageRevisions));
+        router.get("/api/pages/:id/revisions/:revision").handler(timed("GET /api/pages/:id/revisions/:revision", this::apiPageRevision));
+        router.get("/api/titles").handler(timed("GET /api/titles", this::apiTitles));
+        router.get("/api/search").handler(timed("GET /api/search", this::apiSearch));
+        router.get("/api/backup").handler(timed("GET /api/backup", this::apiBackup));
+        router.get("/api/stats/render-cache").handler(context -> apiResponse(context, 200, "renderCache", renderCache.stats()));
+        router.post("/api/pages").handler(timed("POST /api/pages", this::apiCreatePages));
+        router.post("/api/pages/_bulk").handler(timed("POST /api/pages/_bulk", this::apiBulkUpsertPages));
+        router.put("/api/pages/:id").handler(timed("PUT /api/pages/:id", this::apiUpdatePage));
+        router.patch("/api/pages/:id").handler(timed("PATCH /api/pages/:id", this::apiPatchPage));
+        router.delete("/api/pages/:id").handler(timed("DELETE /api/pages/:id", this::apiDeletePage));
 
         int portNumber = config().getInteger(CONFIG_HTTP_SERVER_PORT, 8080);
-        server.requestHandler(router)
-                .rxListen(portNumber)
+        // the first requests for the warmed up pages are served from the render cache
+        SingleHelper.<List<JsonObject>>toSingle(warmed -> WarmUp.pages(vertx.getDelegate(), config(), dbService.getDelegate())
+                        .onComplete(warmed))
+                // the warm-up completes on the event loop of the instance that started it
+                .observeOn(RxHelper.scheduler(vertx.getOrCreateContext()))
+                .doOnSuccess(pages -> pages.forEach(page ->
+                        renderCache.put(page.getInteger("id"), page.getInteger("version"), page.getString("html"))))
+                .flatMap(pages -> server.requestHandler(router).rxListen(portNumber))
                 .subscribe(s -> {
-                    LOGGER.info("HTTP server running on port: " + portNumber);
+                    LOGGER.info("HTTP server running on port: " + portNumber
+                            + (config().getBoolean(CONFIG_HTTP_SERVER_SSL, false) ? " with TLS" : "")
+                            + (vertx.isNativeTransportEnabled() ? " over the native transport" : ""));
                     promise.complete();
                 }, t -> {
                     LOGGER.error("Could not start a HTTP server", t);
+                    promise.fail(t);
                 });
     }
 
+    /**
+     * Connection options of the server. With {@link #CONFIG_HTTP_SERVER_SSL} the server only
+     * accepts TLS, and negotiates HTTP/2 with ALPN unless {@link #CONFIG_HTTP_SERVER_HTTP2} is
+     * false. Plain connections may always upgrade to HTTP/2 (h2c). TCP fast open and quick ack only
+     * apply when Vert.x runs on the native transport.
+     */
+    private HttpServerOptions serverOptions() {
+        JsonObject config = config();
+        HttpServerOptions options = new HttpServerOptions()
+                .setIdleTimeout(config.getInteger(CONFIG_HTTP_SERVER_IDLE_TIMEOUT, HttpServerOptions.DEFAULT_IDLE_TIMEOUT))
+                .setIdleTimeoutUnit(TimeUnit.SECONDS)
+                .setTcpNoDelay(config.getBoolean(CONFIG_HTTP_SERVER_TCP_NO_DELAY, HttpServerOptions.DEFAULT_TCP_NO_DELAY))
+                .setTcpKeepAlive(config.getBoolean(CONFIG_HTTP_SERVER_TCP_KEEP_ALIVE, HttpServerOptions.DEFAULT_TCP_KEEP_ALIVE))
+                .setTcpFastOpen(config.getBoolean(CONFIG_HTTP_SERVER_TCP_FAST_OPEN, HttpServerOptions.DEFAULT_TCP_FAST_OPEN))
+                .setTcpQuickAck(config.getBoolean(CONFIG_HTTP_SERVER_TCP_QUICK_ACK, HttpServerOptions.DEFAULT_TCP_QUICKACK))
+                .setInitialSettings(new Http2Settings()
+                        .setMaxConcurrentStreams(config.getLong(CONFIG_HTTP_SERVER_HTTP2_MAX_STREAMS, DEFAULT_HTTP2_MAX_STREAMS)));
+        if (config.getBoolean(CONFIG_HTTP_SERVER_SSL, false)) {
+            options.setSsl(true)
+                    .setUseAlpn(config.getBoolean(CONFIG_HTTP_SERVER_HTTP2, true))
+                    .setKeyStoreOptions(new JksOptions()
+                            .setPath(config.getString(CONFIG_HTTP_SERVER_KEYSTORE, "keystore.jks"))
+                            .setPassword(config.getString(CONFIG_HTTP_SERVER_KEYSTORE_PASSWORD, "password")));
+        }
+        return options;
+    }
+
+    /**
+     * Sends responses whose length is known and below {@code minBytes} uncompressed, as the gzip
+     * header and trailer would outweigh what compressing them saves. Responses that already carry
+     * a {@code Content-Encoding} are left as they are.
+     */
+    private void skipCompressionBelow(RoutingContext context, long minBytes) {
+        context.addHeadersEndHandler(v -> {
+            MultiMap headers = context.response().headers();
+            String length = headers.get("Content-Length");
+            if (length != null && !headers.contains("Content-Encoding") && Long.parseLong(length) < minBytes) {
+                headers.set("Content-Encoding", "identity");
+            }
+        });
+        context.next();
+    }
+
+    /**
+     * Tells {@link PageUpdatesVerticle} which pages browsers are subscribed to, so that it only
+     * pushes the updates somebody will receive. Subscriptions still open when a socket closes are
+     * released with it.
+     */
+    private void countWatchers(BridgeEvent event) {
+        io.vertx.ext.web.handler.sockjs.SockJSSocket socket = event.socket().getDelegate();
+        switch (event.type()) {
+            case REGISTER:
+                Integer id = watchedPage(event);
+                if (id != null && watchedPages.computeIfAbsent(socket, key -> new ArrayList<>()).add(id)) {
+                    watchers(id, 1);
+                }
+                break;
+            case UNREGISTER:
+                id = watchedPage(event);
+                List<Integer> pages = watchedPages.get(socket);
+                if (id != null && pages != null && pages.remove(id)) {
+                    watchers(id, -1);
+                }
+                break;
+            case SOCKET_CLOSED:
+                pages = watchedPages.remove(socket);
+                if (pages != null) {
+                    pages.forEach(page -> watchers(page, -1));
+                }
+                break;
+            default:
+                break;
+        }
+        event.complete(true);
+    }
+
+    private Integer watchedPage(BridgeEvent event) {
+        String address = event.getRawMessage() != null ? event.getRawMessage().getString("address") : null;
+        if (address == null || !address.matches(PageUpdatesVerticle.PAGE_ADDRESS_REGEX)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(address.substring(PageUpdatesVerticle.PAGE_ADDRESS_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void watchers(int id, int delta) {
+        vertx.eventBus().send(PageUpdatesVerticle.WATCHERS_ADDRESS, new JsonObject().put("id", id).put("delta", delta));
+    }
+
+    /**
+     * Requires a token issued by {@code GET /api/token} for the API calls that change pages. The
+     * token carries the permissions of its user, so checking them involves no database access.
+     */
+    private void authorizeApiWrites(Router router, WikiAuth auth) {
+        router.get("/api/token").handler(context -> apiToken(context, auth));
+        JWTAuthHandler jwt = JWTAuthHandler.create(JWTAuth.newInstance(auth.jwt()));
+        router.post("/api/restore").handler(jwt).handler(requires("create", "update", "delete"));
+        router.post("/api/pages").handler(jwt).handler(requires("create"));
+        router.post("/api/pages/_bulk").handler(jwt).handler(requires("create", "update"));
+        router.put("/api/pages/:id").handler(jwt).handler(requires("update"));
+        router.patch("/api/pages/:id").handler(jwt).handler(requires("update"));
+        router.delete("/api/pages/:id").handler(jwt).handler(requires("delete"));
+    }
+
+    private void apiToken(RoutingContext context, WikiAuth auth) {
+        String username = context.request().getHeader("login");
+        auth.authenticate(username, context.request().getHeader("password")).onComplete(ar -> {
+            if (ar.succeeded()) {
+                context.response().putHeader("Content-Type", "text/plain").end(auth.token(username, ar.result()));
+            } else {
+                apiFailure(context, 401, "Invalid username/password");
+            }
+        });
+    }
+
+    private Handler<RoutingContext> requires(String... permissions) {
+        return context -> {
+            JsonArray granted = context.user().principal().getJsonArray(WikiAuth.PERMISSIONS_CLAIM, new JsonArray());
+            for (String permission : permissions) {
+                if (!granted.contains(permission)) {
+                    apiFailure(context, 403, "Missing permission: " + permission);
+                    return;
+                }
+            }
+            context.next();
+        };
+    }
+
+    /**
+     * The database service for the browser a request comes from, named by its
+     * {@value #CLIENT_HEADER} header. Its requests carry the client so that it reads its own writes
+     * when reads are served by replicas. A proxy is built for each client the first time it is seen,
+     * and kept for the {@value #MAX_CLIENT_SERVICES} most recent ones.
+     */
+    private WikiDatabaseService db(RoutingContext context) {
+        String client = context.request().getHeader(CLIENT_HEADER);
+        if (client == null) {
+            return dbService;
+        }
+        return clientServices.computeIfAbsent(client, key -> me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(
+                vertx.getDelegate(), config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue"), dbShards,
+                new DeliveryOptions().addHeader(WikiDatabaseVerticle.CLIENT_HEADER, key)));
+    }
+
+    /**
+     * Records the time from routing to the end of the response body in a histogram per route.
+     */
+    private Handler<RoutingContext> timed(String route, Handler<RoutingContext> handler) {
+        Histogram latency = metrics.histogram("http_server_request_duration_seconds",
+                "Time from routing a request to the end of its response", "route", route);
+        return context -> {
+            long start = System.nanoTime();
+            context.addBodyEndHandler(v -> latency.recordSince(start));
+            handler.handle(context);
+        };
+    }
+
+    private void metrics(RoutingContext context) {
+        context.response()
+                .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                .end(metrics.scrape());
+    }
+
     private void apiRoot(RoutingContext context) {
-        dbService.rxFetchAllPagesData()
-                .flatMapPublisher(Flowable::fromIterable)
-                .map(obj -> new JsonObject()
-                        .put("id", obj.getInteger("ID"))
-                        .put("name", obj.getString("NAME")))
-                .collect(JsonArray::new, JsonArray::add)
-                .subscribe(pages -> apiResponse(context, 200, "pages", pages), t -> apiFailure(context, t));
+        int after;
+        int limit;
+        try {
+            after = intParam(context, "after", -1);
+            limit = intParam(context, "limit", -1);
+        } catch (NumberFormatException e) {
+            apiFailure(context, 400, "Bad pagination parameters");
+            return;
+        }
+        if (limit == 0 || limit < -1) {
+            apiFailure(context, 400, "Bad pagination parameters");
+            return;
+        }
+        int from = after;
+        int count = limit;
+        dbService.rxFetchListingVersion().subscribe(version -> {
+            String etag = "\"pages-" + version + "\"";
+            if (etagMatches(context.request().getHeader("If-None-Match"), etag)) {
+                notModified(context, etag);
+                return;
+            }
+            context.response().putHeader("ETag", etag);
+            context.response().putHeader("Cache-Control", "no-cache");
+            streamPageSummaries(context, from, count, 0);
+        }, t -> apiFailure(context, t));
+    }
+
+    /**
+     * Writes the page listing as a chunked JSON document, fetching at most {@link #PAGE_LISTING_CHUNK}
+     * summaries at a time with keyset pagination. A negative {@code remaining} streams every page.
+     * The listing stops as soon as the client has gone away.
+     */
+    private void streamPageSummaries(RoutingContext context, int after, int remaining, int written) {
+        if (context.response().closed()) {
+            return;
+        }
+        int chunkSize = remaining < 0 ? PAGE_LISTING_CHUNK : Math.min(remaining, PAGE_LISTING_CHUNK);
+        db(context).rxFetchPageSummaries(after, chunkSize).subscribe(pages -> {
+            HttpServerResponse response = context.response();
+            if (response.closed()) {
+                return;
+            }
+            Buffer buffer = Buffer.buffer();
+            if (written == 0) {
+                response.setStatusCode(200);
+                response.putHeader("Content-Type", "application/json");
+                response.setChunked(true);
+                buffer.appendString("{\"success\":true,\"pages\":[");
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                if (written + i > 0) {
+                    buffer.appendString(",");
+                }
+                buffer.appendString(pages.getJsonObject(i).encode());
+            }
+
+            int lastId = pages.isEmpty() ? after : pages.getJsonObject(pages.size() - 1).getInteger("id");
+            int left = remaining < 0 ? -1 : remaining - pages.size();
+            if (pages.size() < chunkSize) {
+                response.end(buffer.appendString("]}"));
+            } else if (left == 0) {
+                response.end(buffer.appendString("],\"next\":" + lastId + "}"));
+            } else {
+                response.write(buffer);
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> streamPageSummaries(context, lastId, left, written + pages.size()));
+                } else {
+                    streamPageSummaries(context, lastId, left, written + pages.size());
+                }
+            }
+        }, t -> {
+            if (context.response().closed()) {
+                return;
+            }
+            if (written == 0) {
+                apiFailure(context, t);
+            } else {
+                LOGGER.error("Page listing failed after " + written + " pages", t);
+                context.response().reset();
+            }
+        });
+    }
+
+    private void apiTitles(RoutingContext context) {
+        String prefix = context.request().getParam("prefix");
+        int limit;
+        try {
+            limit = intParam(context, "limit", DEFAULT_TITLE_SUGGESTIONS);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (prefix == null || limit <= 0) {
+            apiFailure(context, 400, "Bad title lookup parameters");
+            return;
+        }
+        dbService.rxSearchPageNames(prefix, Math.min(limit, MAX_TITLE_SUGGESTIONS))
+                .subscribe(titles -> apiResponse(context, 200, "titles", titles), t -> apiFailure(context, t));
+    }
+
+    private void apiSearch(RoutingContext context) {
+        String query = context.request().getParam("q");
+        int limit;
+        try {
+            limit = intParam(context, "limit", DEFAULT_SEARCH_RESULTS);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (query == null || limit <= 0) {
+            apiFailure(context, 400, "Bad search parameters");
+            return;
+        }
+        dbService.rxSearchPages(query, Math.min(limit, MAX_SEARCH_RESULTS))
+                .subscribe(results -> apiResponse(context, 200, "results", results), t -> apiFailure(context, t));
     }
 
     private void apiGetPage(RoutingContext context) {
         int id = Integer.parseInt(context.request().getParam("id"));
-        dbService.rxFetchPageById(id)
+        String ifNoneMatch = context.request().getHeader("If-None-Match");
+        String ifModifiedSince = context.request().getHeader("If-Modified-Since");
+        if (ifNoneMatch == null && ifModifiedSince == null) {
+            sendPage(context, id);
+            return;
+        }
+        db(context).rxFetchPageVersion(id)
+                .subscribe(version -> {
+                    if (version.getBoolean("found")) {
+                        String etag = pageEtag(id, version.getInteger("version"));
+                        boolean notModified = ifNoneMatch != null
+                                ? etagMatches(ifNoneMatch, etag)
+                                : !modifiedSince(version.getLong("updatedAt"), ifModifiedSince);
+                        if (notModified) {
+                            notModified(context, etag);
+                            return;
+                        }
+                    }
+                    sendPage(context, id);
+                }, t -> apiFailure(context, t));
+    }
+
+    private void sendPage(RoutingContext context, int id) {
+        db(context).rxFetchPageById(id)
+                .flatMap(dbObj -> {
+                    if (!dbObj.getBoolean("found")) {
+                        return Single.just(dbObj);
+                    }
+                    return renderPage(id, dbObj.getInteger("version"), dbObj.getString("content"))
+                            .map(html -> dbObj.put("html", html));
+                })
                 .subscribe(dbObj -> {
                     if (dbObj.getBoolean("found")) {
+                        int version = dbObj.getInteger("version");
                         JsonObject payLoad = new JsonObject()
                                 .put("name", dbObj.getString("name"))
                                 .put("id", dbObj.getInteger("id"))
+                                .put("version", version)
                                 .put("markdown", dbObj.getString("content"))
-                                .put("html", Processor.process(dbObj.getString("content")));
+                                .put("html", dbObj.getString("html"));
+                        context.response().putHeader("ETag", pageEtag(id, version));
+                        context.response().putHeader("Last-Modified", httpDate(dbObj.getLong("updatedAt")));
+                        context.response().putHeader("Cache-Control", "no-cache");
                         apiResponse(context, 200, "page", payLoad);
                     } else {
                         apiFailure(context, 404, "There is no page with ID: " + id);
@@ -104,36 +544,406 @@ public class HttpServerVerticle extends AbstractVerticle {
                 }, t -> apiFailure(context, t));
     }
 
+    private Single<String> renderPage(int id, int version, String markdown) {
+        String html = renderCache.get(id, version);
+        if (html != null) {
+            return Single.just(html);
+        }
+        return vertx.eventBus().<String>rxRequest(MarkdownRenderVerticle.RENDER_ADDRESS, markdown)
+                .map(reply -> {
+                    renderCache.put(id, version, reply.body());
+                    return reply.body();
+                });
+    }
+
+    private String pageEtag(int id, int version) {
+        return "\"page-" + id + "-" + version + "\"";
+    }
+
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean modifiedSince(long updatedAt, String ifModifiedSince) {
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return updatedAt / 1000 > since / 1000;
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    private String httpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+
+    private void notModified(RoutingContext context, String etag) {
+        context.response().setStatusCode(304);
+        context.response().putHeader("ETag", etag);
+        context.response().putHeader("Cache-Control", "no-cache");
+        context.response().end();
+    }
+
     private void apiCreatePages(RoutingContext context) {
-        JsonObject page = context.getBodyAsJson();
+        JsonObject page = context.body().asJsonObject();
         if (validateJsonPageDocument(context, page, "name", "markdown")) {
             return;
         }
 
-        dbService.rxCreatePage(page.getString("name"), page.getString("markdown"))
+        db(context).rxCreatePage(page.getString("name"), page.getString("markdown"))
                 .subscribe(() -> apiResponse(context, 201, null, null), t -> apiFailure(context, t));
     }
 
+    private void apiBulkUpsertPages(RoutingContext context) {
+        JsonArray body;
+        try {
+            body = context.body().asJsonArray();
+        } catch (DecodeException e) {
+            body = null;
+        }
+        if (body == null) {
+            apiFailure(context, 400, "Bad request payload");
+            return;
+        }
+        List<JsonObject> pages = new ArrayList<>(body.size());
+        for (Object item : body) {
+            pages.add(item instanceof JsonObject ? (JsonObject) item : new JsonObject());
+        }
+        streamBulkUpsert(context, pages, 0);
+    }
+
+    /**
+     * Sends the pages to the database service {@link #BULK_UPSERT_CHUNK} at a time and streams the
+     * per-item results of each chunk as soon as it has been committed.
+     */
+    private void streamBulkUpsert(RoutingContext context, List<JsonObject> pages, int from) {
+        int to = Math.min(pages.size(), from + BULK_UPSERT_CHUNK);
+        db(context).rxBatchUpsertPages(pages.subList(from, to)).subscribe(results -> {
+            HttpServerResponse response = context.response();
+            Buffer buffer = Buffer.buffer();
+            if (from == 0) {
+                response.setStatusCode(200);
+                response.putHeader("Content-Type", "application/json");
+                response.setChunked(true);
+                buffer.appendString("{\"success\":true,\"results\":[");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                JsonObject result = results.getJsonObject(i);
+                result.put("index", result.getInteger("index") + from);
+                if ("updated".equals(result.getString("status"))) {
+                    renderCache.invalidate(result.getInteger("id"));
+                    vertx.eventBus().publish("page.saved", new JsonObject().put("id", result.getInteger("id")));
+                }
+                if (from + i > 0) {
+                    buffer.appendString(",");
+                }
+                buffer.appendString(result.encode());
+            }
+
+            if (to == pages.size()) {
+                response.end(buffer.appendString("]}"));
+            } else {
+                response.write(buffer);
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> streamBulkUpsert(context, pages, to));
+                } else {
+                    streamBulkUpsert(context, pages, to);
+                }
+            }
+        }, t -> {
+            if (from == 0) {
+                apiFailure(context, t);
+            } else {
+                LOGGER.error("Bulk upsert failed after " + from + " pages", t);
+                context.response().reset();
+            }
+        });
+    }
+
+    /**
+     * Streams every page as gzip-compressed NDJSON. Pages arrive from the database service in
+     * batches that are only acknowledged once written to the response, and the response is only
+     * written to while it can take more data, so memory use does not depend on the size of the wiki.
+     */
+    private void apiBackup(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        GzipNdjsonWriter writer = new GzipNdjsonWriter();
+        List<Message<JsonArray>> unacknowledged = new ArrayList<>(1);
+        boolean[] closed = {false};
+        MessageConsumer<JsonArray> consumer = vertx.eventBus().consumer("wiki.backup." + UUID.randomUUID(), message -> {
+            if (closed[0]) {
+                message.fail(500, "The backup client went away");
+                return;
+            }
+            startBackup(response);
+            io.vertx.core.buffer.Buffer compressed = writer.write(message.body());
+            if (compressed.length() > 0) {
+                response.write(Buffer.newInstance(compressed));
+            }
+            if (response.writeQueueFull()) {
+                unacknowledged.add(message);
+                response.drainHandler(v -> {
+                    if (!unacknowledged.isEmpty()) {
+                        unacknowledged.remove(0).reply(null);
+                    }
+                });
+            } else {
+                message.reply(null);
+            }
+        });
+        response.closeHandler(v -> {
+            closed[0] = true;
+            if (!unacknowledged.isEmpty()) {
+                unacknowledged.remove(0).fail(500, "The backup client went away");
+            }
+        });
+
+        consumer.rxCompletionHandler()
+                .andThen(backupService.rxExportPages(consumer.address(), BACKUP_BATCH))
+                .doFinally(consumer::unregister)
+                .subscribe(count -> {
+                    startBackup(response);
+                    response.end(Buffer.newInstance(writer.finish()));
+                    LOGGER.info("Backed up " + count + " pages");
+                }, t -> {
+                    writer.finish();
+                    if (!response.headWritten()) {
+                        apiFailure(context, t);
+                    } else {
+                        LOGGER.error("Backup failed", t);
+                        response.reset();
+                    }
+                });
+    }
+
+    private void startBackup(HttpServerResponse response) {
+        if (!response.headWritten() && !response.isChunked()) {
+            response.setStatusCode(200);
+            response.putHeader("Content-Type", "application/gzip");
+            // the body is gzip already, compressing it again would only cost CPU
+            response.putHeader("Content-Encoding", "identity");
+            response.putHeader("Content-Disposition", "attachment; filename=\"wiki-backup.ndjson.gz\"");
+            response.setChunked(true);
+        }
+    }
+
+    /**
+     * Restores a backup, or any NDJSON stream of {@code name} and {@code markdown} objects, gzip
+     * compressed or not. Pages are upserted by name {@link #BULK_UPSERT_CHUNK} at a time, and the
+     * request is paused while a chunk is being written, so only about one chunk of pages is held in
+     * memory whatever the size of the backup. The response counts the pages by upsert status.
+     */
+    private final class Restore {
+
+        private final RoutingContext context;
+        private final HttpServerRequest request;
+        private final NdjsonReader reader;
+        private final JsonObject counts = new JsonObject();
+        private List<JsonObject> pages = new ArrayList<>();
+        private boolean writing;
+        private boolean ended;
+        private boolean failed;
+
+        Restore(RoutingContext context) {
+            this.context = context;
+            this.request = context.request();
+            this.reader = new NdjsonReader(MAX_RESTORE_LINE, page -> pages.add(page != null ? page : new JsonObject()));
+        }
+
+        void start() {
+            request.handler(chunk -> {
+                if (failed) {
+                    return;
+                }
+                try {
+                    reader.handle(chunk.getDelegate());
+                } catch (IllegalArgumentException e) {
+                    fail(400, e.getMessage());
+                    return;
+                }
+                if (pages.size() >= BULK_UPSERT_CHUNK) {
+                    request.pause();
+                    flush();
+                }
+            });
+            request.endHandler(v -> {
+                if (failed) {
+                    return;
+                }
+                ended = true;
+                reader.end();
+                flush();
+            });
+        }
+
+        private void flush() {
+            if (writing || failed) {
+                return;
+            }
+            if (!ended && pages.size() < BULK_UPSERT_CHUNK) {
+                request.resume();
+                return;
+            }
+            if (pages.isEmpty()) {
+                apiResponse(context, 200, "restored", counts);
+                return;
+            }
+            List<JsonObject> chunk = pages;
+            pages = new ArrayList<>();
+            writing = true;
+            db(context).rxBatchUpsertPages(chunk).subscribe(results -> {
+                writing = false;
+                for (int i = 0; i < results.size(); i++) {
+                    JsonObject result = results.getJsonObject(i);
+                    String status = result.getString("status");
+                    counts.put(status, counts.getInteger(status, 0) + 1);
+                    if ("updated".equals(status)) {
+                        renderCache.invalidate(result.getInteger("id"));
+                        vertx.eventBus().publish("page.saved", new JsonObject().put("id", result.getInteger("id")));
+                    }
+                }
+                flush();
+            }, t -> {
+                writing = false;
+                LOGGER.error("Restore failed after " + counts, t);
+                fail(500, t.getMessage());
+            });
+        }
+
+        private void fail(int statusCode, String error) {
+            failed = true;
+            pages.clear();
+            reader.close();
+            apiFailure(context, statusCode, error);
+            // the rest of the body is discarded
+            request.resume();
+        }
+    }
+
     private void apiUpdatePage(RoutingContext context) {
         int id = Integer.parseInt(context.request().getParam("id"));
-        JsonObject page = context.getBodyAsJson();
+        JsonObject page = context.body().asJsonObject();
         if (validateJsonPageDocument(context, page, "markdown")) {
             return;
         }
-        dbService.rxSavePage(id, page.getString("markdown"))
+        // the database service announces saves itself, once per coalesced write
+        db(context).rxSavePage(id, page.getString("markdown"))
+                .doOnComplete(() -> renderCache.invalidate(id))
+                .subscribe(() -> apiResponse(context, 200, null, null), t -> {
+                    int code = t instanceof ServiceException ? ((ServiceException) t).failureCode() : -1;
+                    if (code == ErrorCodes.PAGE_CONFLICT.ordinal()) {
+                        apiFailure(context, 409, t.getMessage());
+                    } else if (code == ErrorCodes.PAGE_NOT_FOUND.ordinal()) {
+                        apiFailure(context, 404, t.getMessage());
+                    } else {
+                        apiFailure(context, t);
+                    }
+                });
+    }
+
+    /**
+     * Applies a text delta ({@code edits}) made against {@code baseRevision}. Answers 409 with the
+     * current version when the page has changed since, so the client can rebase or reload.
+     */
+    private void apiPatchPage(RoutingContext context) {
+        int id = Integer.parseInt(context.request().getParam("id"));
+        JsonObject page = context.body().asJsonObject();
+        if (validateJsonPageDocument(context, page, "baseRevision", "edits")) {
+            return;
+        }
+        if (!(page.getValue("baseRevision") instanceof Integer) || !(page.getValue("edits") instanceof JsonArray)) {
+            apiFailure(context, 400, "Bad request payload");
+            return;
+        }
+        // the edits are published once applied, so the service gets its own copy
+        JsonArray edits = page.getJsonArray("edits");
+        db(context).rxPatchPage(id, page.getInteger("baseRevision"), edits.copy())
+                .subscribe(result -> {
+                    switch (result.getString("status")) {
+                        case "patched":
+                            renderCache.invalidate(id);
+                            // the edits let viewers of the page catch up without fetching it
+                            vertx.eventBus().publish("page.saved", new JsonObject()
+                                    .put("id", id)
+                                    .put("client", context.request().getHeader(CLIENT_HEADER))
+                                    .put("version", result.getInteger("version"))
+                                    .put("edits", edits));
+                            apiResponse(context, 200, "version", result.getInteger("version"));
+                            break;
+                        case "conflict":
+                            context.response().setStatusCode(409);
+                            context.response().putHeader("Content-Type", "application/json");
+                            context.response().end(new JsonObject()
+                                    .put("success", false)
+                                    .put("error", "The page was modified since revision " + page.getInteger("baseRevision"))
+                                    .put("version", result.getInteger("version")).encode());
+                            break;
+                        case "invalid":
+                            apiFailure(context, 400, result.getString("error"));
+                            break;
+                        default:
+                            apiFailure(context, 404, "There is no page with ID: " + id);
+                    }
+                }, t -> apiFailure(context, t));
+    }
+
+    private void apiPageRevisions(RoutingContext context) {
+        int id = Integer.parseInt(context.request().getParam("id"));
+        int limit;
+        try {
+            limit = intParam(context, "limit", DEFAULT_REVISIONS);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit <= 0) {
+            apiFailure(context, 400, "Bad revision listing parameters");
+            return;
+        }
+        db(context).rxFetchPageRevisions(id, Math.min(limit, MAX_REVISIONS))
+                .subscribe(revisions -> apiResponse(context, 200, "revisions", revisions), t -> apiFailure(context, t));
+    }
+
+    private void apiPageRevision(RoutingContext context) {
+        int id = Integer.parseInt(context.request().getParam("id"));
+        int revision = Integer.parseInt(context.request().getParam("revision"));
+        db(context).rxFetchPageRevision(id, revision)
+                .subscribe(result -> {
+                    if (result.getBoolean("found")) {
+                        result.remove("found");
+                        apiResponse(context, 200, "revision", result);
+                    } else {
+                        apiFailure(context, 404, "There is no revision " + revision + " of page " + id);
+                    }
+                }, t -> apiFailure(context, t));
+    }
+
+    private void apiDeletePage(RoutingContext context) {
+        int id = Integer.parseInt(context.request().getParam("id"));
+        db(context).rxDeletePage(id)
                 .doOnComplete(() -> {
-                    JsonObject event = new JsonObject()
+                    renderCache.invalidate(id);
+                    vertx.eventBus().publish("page.saved", new JsonObject()
                             .put("id", id)
-                            .put("client", page.getString("client"));
-                    vertx.eventBus().publish("page.saved", event);
+                            .put("deleted", true));
                 })
                 .subscribe(() -> apiResponse(context, 200, null, null), t -> apiFailure(context, t));
     }
 
-    private void apiDeletePage(RoutingContext context) {
-        int id = Integer.parseInt(context.request().getParam("id"));
-        dbService.rxDeletePage(id)
-                .subscribe(() -> apiResponse(context, 200, null, null), t -> apiFailure(context, t));
+    private int intParam(RoutingContext context, String name, int defaultValue) {
+        String value = context.request().getParam(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
     }
 
     private void apiResponse(RoutingContext context, int statusCode, String jsonField, Object jsonData) {
@@ -146,6 +956,23 @@ public class HttpServerVerticle extends AbstractVerticle {
         context.response().end(wrapped.encode());
     }
 
+    /**
+     * Answers the API requests a handler failed, such as those {@link JWTAuthHandler} rejects, with
+     * the JSON error of the API instead of the default plain-text page.
+     */
+    private void apiFailed(RoutingContext context) {
+        if (context.response().ended()) {
+            return;
+        }
+        int statusCode = context.statusCode() > 0 ? context.statusCode() : 500;
+        Throwable failure = context.failure();
+        if (statusCode >= 500) {
+            LOGGER.error("API request failed: " + context.request().method() + " " + context.request().path(), failure);
+        }
+        apiFailure(context, statusCode, failure != null && failure.getMessage() != null
+                ? failure.getMessage() : HttpResponseStatus.valueOf(statusCode).reasonPhrase());
+    }
+
     private void apiFailure(RoutingContext context, Throwable t) {
         apiFailure(context, 500, t.getMessage());
     }
@@ -0,0 +1,83 @@
+package me.ryan.vertx.wiki.http;
+
+import com.github.rjeschke.txtmark.Processor;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.eventbus.Message;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Renders markdown sent to {@link #RENDER_ADDRESS} on a dedicated worker pool, keeping the event
+ * loops free. Requests wait in a bounded queue; a request carrying a {@link #CLIENT_HEADER} replaces
+ * any queued request from the same client, which is failed with {@link #SUPERSEDED}.
+ */
+public class MarkdownRenderVerticle extends AbstractVerticle {
+
+    public static final String RENDER_ADDRESS = "app.markdown";
+    public static final String CLIENT_HEADER = "client";
+
+    public static final String CONFIG_RENDER_POOL_SIZE = "render.pool.size";
+    public static final String CONFIG_RENDER_QUEUE_SIZE = "render.queue.size";
+
+    public static final int SUPERSEDED = 409;
+    public static final int QUEUE_FULL = 503;
+
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+
+    private final LinkedHashMap<String, Message<String>> pending = new LinkedHashMap<>();
+    private WorkerExecutor executor;
+    private int poolSize;
+    private int queueSize;
+    private int inFlight;
+    private long anonymousRequests;
+
+    @Override
+    public void start() {
+        poolSize = config().getInteger(CONFIG_RENDER_POOL_SIZE, Runtime.getRuntime().availableProcessors());
+        queueSize = config().getInteger(CONFIG_RENDER_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        executor = vertx.createSharedWorkerExecutor("markdown-renderer", poolSize);
+        vertx.eventBus().<String>consumer(RENDER_ADDRESS, this::enqueue);
+    }
+
+    @Override
+    public void stop() {
+        executor.close();
+    }
+
+    private void enqueue(Message<String> message) {
+        String client = message.headers().get(CLIENT_HEADER);
+        String key = client != null ? "client:" + client : "request:" + anonymousRequests++;
+
+        Message<String> superseded = pending.remove(key);
+        if (superseded != null) {
+            superseded.fail(SUPERSEDED, "Superseded by a newer render request");
+        }
+        if (pending.size() >= queueSize) {
+            message.fail(QUEUE_FULL, "Render queue is full");
+            return;
+        }
+        pending.put(key, message);
+        drain();
+    }
+
+    private void drain() {
+        Iterator<Message<String>> iterator = pending.values().iterator();
+        while (inFlight < poolSize && iterator.hasNext()) {
+            Message<String> message = iterator.next();
+            iterator.remove();
+            inFlight++;
+            String markdown = message.body() != null ? message.body() : "";
+            executor.<String>executeBlocking(promise -> promise.complete(Processor.process(markdown)), false, ar -> {
+                inFlight--;
+                if (ar.succeeded()) {
+                    message.reply(ar.result());
+                } else {
+                    message.fail(500, ar.cause().getMessage());
+                }
+                drain();
+            });
+        }
+    }
+}
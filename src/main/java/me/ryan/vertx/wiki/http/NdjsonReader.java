@@ -0,0 +1,135 @@
+package me.ryan.vertx.wiki.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits NDJSON arriving in arbitrary chunks into JSON objects, passing {@code null} for a line
+ * that is not a JSON object and skipping blank lines. Input starting with the gzip magic bytes is
+ * inflated as it arrives, so a backup can be restored exactly as it was downloaded. Only the
+ * current line is buffered; a line longer than the limit fails the input.
+ */
+final class NdjsonReader {
+
+    private final int maxLineLength;
+    private final Handler<JsonObject> handler;
+
+    private Buffer partial = Buffer.buffer();
+    private EmbeddedChannel inflater;
+    private boolean started;
+
+    NdjsonReader(int maxLineLength, Handler<JsonObject> handler) {
+        this.maxLineLength = maxLineLength;
+        this.handler = handler;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the input is not valid gzip or has a line that is too long
+     */
+    void handle(Buffer chunk) {
+        if (chunk.length() == 0) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            if (chunk.length() >= 2 && (chunk.getByte(0) & 0xff) == 0x1f && (chunk.getByte(1) & 0xff) == 0x8b) {
+                inflater = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+            }
+        }
+        if (inflater == null) {
+            split(chunk);
+            return;
+        }
+        try {
+            inflater.writeInbound(Unpooled.wrappedBuffer(chunk.getBytes()));
+        } catch (DecompressionException e) {
+            close();
+            throw new IllegalArgumentException("Corrupt gzip input: " + e.getMessage());
+        }
+        drainInflater();
+    }
+
+    /**
+     * Handles the last line, which need not end with a newline. A truncated input therefore
+     * usually ends with a line that is reported as not being a JSON object.
+     */
+    void end() {
+        close();
+        if (partial.length() > 0) {
+            line(partial);
+            partial = Buffer.buffer();
+        }
+    }
+
+    /**
+     * Releases the inflater of an input that will not be read to the end.
+     */
+    void close() {
+        if (inflater != null) {
+            EmbeddedChannel channel = inflater;
+            inflater = null;
+            try {
+                channel.finishAndReleaseAll();
+            } catch (DecompressionException e) {
+                // the input is being abandoned, and a corrupt stream has already been reported
+            }
+        }
+    }
+
+    private void drainInflater() {
+        ByteBuf inflated;
+        while ((inflated = inflater.readInbound()) != null) {
+            try {
+                split(Buffer.buffer(inflated));
+            } finally {
+                inflated.release();
+            }
+        }
+    }
+
+    private void split(Buffer data) {
+        int start = 0;
+        for (int i = 0; i < data.length(); i++) {
+            if (data.getByte(i) == '\n') {
+                if (partial.length() == 0) {
+                    line(data.slice(start, i));
+                } else {
+                    line(partial.appendBuffer(data, start, i - start));
+                    partial = Buffer.buffer();
+                }
+                start = i + 1;
+            }
+        }
+        if (start < data.length()) {
+            partial.appendBuffer(data, start, data.length() - start);
+        }
+        if (partial.length() > maxLineLength) {
+            close();
+            throw new IllegalArgumentException("Line longer than " + maxLineLength + " bytes");
+        }
+    }
+
+    private void line(Buffer line) {
+        String text = line.toString(StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            return;
+        }
+        JsonObject object;
+        try {
+            object = new JsonObject(text);
+        } catch (DecodeException e) {
+            object = null;
+        }
+        handler.handle(object);
+    }
+}
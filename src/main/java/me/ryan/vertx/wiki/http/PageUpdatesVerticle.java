@@ -0,0 +1,88 @@
+package me.ryan.vertx.wiki.http;
+
+import io.reactivex.Single;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.AbstractVerticle;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pushes page changes to the browsers viewing them. For every {@code page.saved} event about a
+ * page that has watchers, the page is read and rendered once and published to its own
+ * {@code page.<id>} address, which the SockJS bridge fans out to every subscribed browser:
+ * <ul>
+ * <li>{@code {id, deleted: true}} when the page was deleted;</li>
+ * <li>{@code {id, version, client, html, baseVersion, edits}} when the saved event carried the
+ * edits that produced this version (a {@code PATCH});</li>
+ * <li>{@code {id, version, client, html, markdown}} otherwise.</li>
+ * </ul>
+ * HTTP server verticles report watchers to {@link #WATCHERS_ADDRESS} as {@code {id, delta}}
+ * messages. Deploy a single instance.
+ */
+public class PageUpdatesVerticle extends AbstractVerticle {
+
+    public static final String WATCHERS_ADDRESS = "page.watchers";
+    public static final String PAGE_ADDRESS_PREFIX = "page.";
+    public static final String PAGE_ADDRESS_REGEX = "page\\.[0-9]+";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageUpdatesVerticle.class);
+
+    private final Map<Integer, Integer> watchers = new HashMap<>();
+    private WikiDatabaseService dbService;
+
+    @Override
+    public void start() {
+        String wikiDbQueue = config().getString(HttpServerVerticle.CONFIG_WIKIDB_QUEUE, "wikidb.queue");
+        dbService = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx.getDelegate(), wikiDbQueue,
+                config().getInteger(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARDS, 1), new DeliveryOptions());
+
+        vertx.eventBus().<JsonObject>consumer(WATCHERS_ADDRESS, message -> {
+            int id = message.body().getInteger("id");
+            int count = watchers.getOrDefault(id, 0) + message.body().getInteger("delta");
+            if (count > 0) {
+                watchers.put(id, count);
+            } else {
+                watchers.remove(id);
+            }
+        });
+        vertx.eventBus().<JsonObject>consumer("page.saved", message -> {
+            Integer id = message.body().getInteger("id");
+            if (id != null && watchers.containsKey(id)) {
+                push(id, message.body());
+            }
+        });
+    }
+
+    private void push(int id, JsonObject saved) {
+        if (saved.getBoolean("deleted", false)) {
+            vertx.eventBus().publish(PAGE_ADDRESS_PREFIX + id, new JsonObject().put("id", id).put("deleted", true));
+            return;
+        }
+        dbService.rxFetchPageById(id)
+                .flatMap(page -> {
+                    if (!page.getBoolean("found")) {
+                        return Single.just(new JsonObject().put("id", id).put("deleted", true));
+                    }
+                    int version = page.getInteger("version");
+                    JsonObject update = new JsonObject()
+                            .put("id", id)
+                            .put("version", version)
+                            .put("client", saved.getString("client"));
+                    if (saved.getValue("edits") != null && Integer.valueOf(version).equals(saved.getInteger("version"))) {
+                        update.put("baseVersion", version - 1).put("edits", saved.getJsonArray("edits"));
+                    } else {
+                        update.put("markdown", page.getString("content"));
+                    }
+                    return vertx.eventBus().<String>rxRequest(MarkdownRenderVerticle.RENDER_ADDRESS, page.getString("content"))
+                            .map(reply -> update.put("html", reply.body()));
+                })
+                .subscribe(update -> vertx.eventBus().publish(PAGE_ADDRESS_PREFIX + id, update),
+                        t -> LOGGER.warn("Could not push the update of page " + id, t));
+    }
+}
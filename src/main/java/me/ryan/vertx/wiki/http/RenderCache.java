@@ -0,0 +1,101 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.json.JsonObject;
+import me.ryan.vertx.wiki.metrics.Counter;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of rendered page HTML, weighted by the size of the cached strings.
+ * An entry is only served back for the page version it was rendered from.
+ * Instances are confined to the event loop of the verticle that owns them; the hit, miss and
+ * eviction counters are registry metrics and are therefore summed over every instance.
+ */
+class RenderCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxWeight;
+    private long weight;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    RenderCache(long maxWeight) {
+        this(maxWeight, new MetricsRegistry());
+    }
+
+    RenderCache(long maxWeight, MetricsRegistry metrics) {
+        this.maxWeight = maxWeight;
+        this.hits = metrics.counter("render_cache_hits_total", "Rendered pages served from the cache");
+        this.misses = metrics.counter("render_cache_misses_total", "Rendered pages missing from the cache");
+        this.evictions = metrics.counter("render_cache_evictions_total", "Rendered pages evicted from the cache");
+    }
+
+    String get(int id, int version) {
+        Entry entry = entries.get(id);
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry.html;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(int id, int version, String html) {
+        Entry entry = new Entry(version, html);
+        if (entry.weight > maxWeight) {
+            invalidate(id);
+            return;
+        }
+        Entry previous = entries.put(id, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+        evict();
+    }
+
+    void invalidate(int id) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("entries", entries.size())
+                .put("weight", weight)
+                .put("maxWeight", maxWeight)
+                .put("hits", hits.sum())
+                .put("misses", misses.sum())
+                .put("evictions", evictions.sum());
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Integer, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().getValue().weight;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+        final int version;
+        final String html;
+        final long weight;
+
+        Entry(int version, String html) {
+            this.version = version;
+            this.html = html;
+            this.weight = 2L * html.length() + ENTRY_OVERHEAD;
+        }
+    }
+}
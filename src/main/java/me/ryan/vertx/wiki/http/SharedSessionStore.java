@@ -0,0 +1,39 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.sstore.LocalSessionStore;
+import io.vertx.ext.web.sstore.SessionStore;
+
+/**
+ * Holds the single session store used by every {@link HttpServerVerticle} instance of a Vert.x
+ * instance. The store keeps sessions in a concurrent local map, which any event loop can read
+ * and write without locking, and only the first instance to ask for it starts its expiry timer.
+ */
+final class SharedSessionStore implements Shareable {
+
+    private static final String LOCAL_MAP = "wiki.http.session-store";
+
+    private final SessionStore store;
+
+    private SharedSessionStore(SessionStore store) {
+        this.store = store;
+    }
+
+    static SessionStore get(Vertx vertx) {
+        LocalMap<String, SharedSessionStore> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        SharedSessionStore shared = map.get(LOCAL_MAP);
+        if (shared == null) {
+            // a store is only created once: closing a spare one would clear the sessions map it shares
+            synchronized (SharedSessionStore.class) {
+                shared = map.get(LOCAL_MAP);
+                if (shared == null) {
+                    shared = new SharedSessionStore(LocalSessionStore.create(vertx));
+                    map.put(LOCAL_MAP, shared);
+                }
+            }
+        }
+        return shared.store;
+    }
+}
@@ -0,0 +1,204 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the files of the web root from memory under {@code /app/}. The files are read, hashed
+ * and gzip compressed once per Vert.x instance, so no request reads or compresses them again.
+ * <p>
+ * Every asset other than an HTML page is also served under a name that includes its content hash,
+ * such as {@code wiki.0123456789ab.js}, with a one year {@code Cache-Control}; HTML pages refer
+ * to those names and are revalidated with their {@code ETag} on each use. A new build therefore
+ * changes the names the pages load, and browsers never use a stale script.
+ */
+final class StaticAssets implements Shareable {
+
+    private static final String LOCAL_MAP = "wiki.http.static-assets";
+    private static final String PREFIX = "/app/";
+    private static final int HASH_LENGTH = 12;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    /**
+     * @param files the content of each file of the web root, by file name
+     */
+    StaticAssets(Map<String, Buffer> files) {
+        Map<String, String> hashedNames = new HashMap<>();
+        files.forEach((name, content) -> {
+            if (!isHtml(name)) {
+                String hash = hash(content);
+                String hashedName = hashedName(name, hash);
+                hashedNames.put(name, hashedName);
+                Asset asset = new Asset(name, content, hash, REVALIDATE);
+                assets.put(name, asset);
+                assets.put(hashedName, new Asset(name, content, hash, IMMUTABLE, asset.gzipped));
+            }
+        });
+        files.forEach((name, content) -> {
+            if (isHtml(name)) {
+                String html = content.toString(StandardCharsets.UTF_8);
+                for (Map.Entry<String, String> hashed : hashedNames.entrySet()) {
+                    html = html.replace(PREFIX + hashed.getKey(), PREFIX + hashed.getValue());
+                }
+                Buffer rewritten = Buffer.buffer(html);
+                assets.put(name, new Asset(name, rewritten, hash(rewritten), REVALIDATE));
+            }
+        });
+    }
+
+    /**
+     * Returns the assets of {@code webroot}, loading them with blocking reads the first time they
+     * are asked for in this Vert.x instance.
+     */
+    static StaticAssets get(Vertx vertx, String webroot) {
+        LocalMap<String, StaticAssets> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        StaticAssets shared = map.get(webroot);
+        if (shared == null) {
+            Map<String, Buffer> files = new HashMap<>();
+            for (String path : vertx.fileSystem().readDirBlocking(webroot)) {
+                if (!vertx.fileSystem().propsBlocking(path).isDirectory()) {
+                    files.put(new File(path).getName(), vertx.fileSystem().readFileBlocking(path));
+                }
+            }
+            StaticAssets loaded = new StaticAssets(files);
+            shared = map.putIfAbsent(webroot, loaded);
+            if (shared == null) {
+                shared = loaded;
+            }
+        }
+        return shared;
+    }
+
+    void handle(RoutingContext context) {
+        String path = context.normalizedPath();
+        Asset asset = path.startsWith(PREFIX) ? assets.get(path.substring(PREFIX.length())) : null;
+        if (asset == null) {
+            context.next();
+            return;
+        }
+        HttpServerRequest request = context.request();
+        HttpServerResponse response = context.response()
+                .putHeader("Cache-Control", asset.cacheControl)
+                .putHeader("ETag", asset.etag)
+                .putHeader("Vary", "Accept-Encoding");
+        if (asset.etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatusCode(304).end();
+            return;
+        }
+        response.putHeader("Content-Type", asset.contentType);
+        if (asset.gzipped != null && acceptsGzip(request.getHeader("Accept-Encoding"))) {
+            response.putHeader("Content-Encoding", "gzip").end(asset.gzipped);
+        } else {
+            response.end(asset.content);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].trim();
+                    if (parameter.matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHtml(String name) {
+        return name.endsWith(".html");
+    }
+
+    private static String hashedName(String name, String hash) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name + "." + hash : name.substring(0, dot) + "." + hash + name.substring(dot);
+    }
+
+    private static String hash(Buffer content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes());
+            StringBuilder hex = new StringBuilder(HASH_LENGTH);
+            for (int i = 0; i < HASH_LENGTH / 2; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compresses {@code content} at the highest level, as this is only done once.
+     *
+     * @return the compressed content, or {@code null} when compressing does not make it smaller
+     */
+    private static Buffer gzip(Buffer content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length());
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content.getBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.size() < content.length() ? Buffer.buffer(bytes.toByteArray()) : null;
+    }
+
+    private static final class Asset {
+        final Buffer content;
+        final Buffer gzipped;
+        final String contentType;
+        final String etag;
+        final String cacheControl;
+
+        Asset(String name, Buffer content, String hash, String cacheControl) {
+            this(name, content, hash, cacheControl, gzip(content));
+        }
+
+        Asset(String name, Buffer content, String hash, String cacheControl, Buffer gzipped) {
+            this.content = content;
+            this.gzipped = gzipped;
+            this.etag = "\"" + hash + "\"";
+            this.cacheControl = cacheControl;
+            String mimeType = MimeMapping.getMimeTypeForFilename(name);
+            if (mimeType == null) {
+                this.contentType = "application/octet-stream";
+            } else if (mimeType.startsWith("text/") || mimeType.equals("application/javascript")) {
+                this.contentType = mimeType + ";charset=utf-8";
+            } else {
+                this.contentType = mimeType;
+            }
+        }
+    }
+}
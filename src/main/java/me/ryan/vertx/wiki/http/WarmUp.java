@@ -0,0 +1,127 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import me.ryan.vertx.wiki.database.WikiDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and renders the pages named by {@link HttpServerVerticle#CONFIG_HTTP_WARMUP_PAGES} before
+ * the HTTP server verticles listen. The pages are looked up by name once, then go through the same
+ * database and render calls as page requests, {@link HttpServerVerticle#CONFIG_HTTP_WARMUP_ROUNDS}
+ * times over so that these paths are compiled by the JIT, and the pages rendered by the last round
+ * are handed to every instance to seed its render cache. The warm-up runs once per Vert.x instance, and never fails:
+ * pages that cannot be read or rendered are left out.
+ */
+final class WarmUp implements Shareable {
+
+    private static final String LOCAL_MAP = "wiki.http.warm-up";
+    private static final int DEFAULT_ROUNDS = 20;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+
+    private final Future<List<JsonObject>> pages;
+
+    private WarmUp(Vertx vertx, JsonObject config, WikiDatabaseService db) {
+        JsonArray names = config.getJsonArray(HttpServerVerticle.CONFIG_HTTP_WARMUP_PAGES, new JsonArray());
+        int rounds = Math.max(1, config.getInteger(HttpServerVerticle.CONFIG_HTTP_WARMUP_ROUNDS, DEFAULT_ROUNDS));
+        if (names.isEmpty()) {
+            pages = Future.succeededFuture(List.of());
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Future<List<Integer>> ids = ids(db, names);
+        Future<List<JsonObject>> warmed = ids.map(found -> List.of());
+        for (int round = 0; round < rounds; round++) {
+            warmed = warmed.compose(previous -> round(vertx, db, ids.result()));
+        }
+        pages = warmed.onSuccess(rendered -> LOGGER.info("Warmed up " + rendered.size() + " of " + names.size()
+                + " pages in " + (System.currentTimeMillis() - started) + " ms"));
+    }
+
+    /**
+     * The pages rendered by the warm-up of the given Vert.x instance, as {@code {id, version, html}}
+     * objects. The configuration and database service of the first caller are the ones used.
+     */
+    static Future<List<JsonObject>> pages(Vertx vertx, JsonObject config, WikiDatabaseService db) {
+        LocalMap<String, WarmUp> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        WarmUp warmUp = map.get(LOCAL_MAP);
+        if (warmUp == null) {
+            synchronized (WarmUp.class) {
+                warmUp = map.get(LOCAL_MAP);
+                if (warmUp == null) {
+                    warmUp = new WarmUp(vertx, config, db);
+                    map.put(LOCAL_MAP, warmUp);
+                }
+            }
+        }
+        return warmUp.pages;
+    }
+
+    /**
+     * The ids of the pages of the given names, leaving out the pages that are not found.
+     */
+    private static Future<List<Integer>> ids(WikiDatabaseService db, JsonArray names) {
+        List<Future<JsonObject>> pages = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.getString(i);
+            Promise<JsonObject> page = Promise.promise();
+            db.fetchPage(name, page);
+            pages.add(page.future().onFailure(t -> LOGGER.warn("Could not warm up page " + name, t)));
+        }
+        return CompositeFuture.join(new ArrayList<>(pages)).otherwiseEmpty().map(done -> {
+            List<Integer> ids = new ArrayList<>(pages.size());
+            for (Future<JsonObject> page : pages) {
+                if (page.succeeded() && page.result().getBoolean("found")) {
+                    ids.add(page.result().getInteger("id"));
+                }
+            }
+            return ids;
+        });
+    }
+
+    private static Future<List<JsonObject>> round(Vertx vertx, WikiDatabaseService db, List<Integer> ids) {
+        List<Future<JsonObject>> rendered = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            rendered.add(page(vertx, db, id));
+        }
+        return CompositeFuture.join(new ArrayList<>(rendered)).otherwiseEmpty().map(done -> {
+            List<JsonObject> pages = new ArrayList<>(rendered.size());
+            for (Future<JsonObject> page : rendered) {
+                if (page.succeeded() && page.result() != null) {
+                    pages.add(page.result());
+                }
+            }
+            return pages;
+        });
+    }
+
+    /**
+     * Reads and renders a page the way a request for it does, completing with {@code null} when
+     * the page is no longer found.
+     */
+    private static Future<JsonObject> page(Vertx vertx, WikiDatabaseService db, int id) {
+        Promise<JsonObject> byId = Promise.promise();
+        db.fetchPageById(id, byId);
+        return byId.future().compose(page -> {
+            if (!page.getBoolean("found")) {
+                return Future.succeededFuture();
+            }
+            return vertx.eventBus().<String>request(MarkdownRenderVerticle.RENDER_ADDRESS, page.getString("content"))
+                    .map(reply -> new JsonObject()
+                            .put("id", page.getInteger("id"))
+                            .put("version", page.getInteger("version"))
+                            .put("html", reply.body()));
+        }).onFailure(t -> LOGGER.warn("Could not warm up page " + id, t));
+    }
+}
@@ -0,0 +1,255 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.authentication.AuthenticationProvider;
+import io.vertx.ext.auth.authentication.UsernamePasswordCredentials;
+import io.vertx.ext.auth.jdbc.JDBCAuthentication;
+import io.vertx.ext.auth.jdbc.JDBCAuthenticationOptions;
+import io.vertx.ext.auth.jdbc.JDBCHashStrategy;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import me.ryan.vertx.wiki.metrics.Counter;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Authenticates wiki users against the {@code user}, {@code user_roles} and {@code roles_perms}
+ * tables seeded by {@link AuthInitializerVerticle}, and issues JWTs listing their permissions so
+ * that API calls are authorized from the token alone. One instance serves every
+ * {@link HttpServerVerticle} of a Vert.x instance.
+ * <p>
+ * Verified credentials are remembered as a keyed digest for a bounded time, so a user presenting
+ * the same password again is neither looked up nor re-hashed with SHA-512. The permissions of
+ * every user are resolved from their roles up front, and resolved again, with the remembered
+ * credentials dropped, whenever a message is sent to {@link #CHANGED_ADDRESS}.
+ */
+final class WikiAuth implements Shareable {
+
+    /**
+     * Address to notify after changing users, roles or permissions.
+     */
+    static final String CHANGED_ADDRESS = "wiki.auth.changed";
+    static final String PERMISSIONS_CLAIM = "permissions";
+
+    private static final String LOCAL_MAP = "wiki.http.auth";
+    private static final String DATA_SOURCE_NAME = "wiki-auth";
+    private static final long DEFAULT_CACHE_TTL_S = 300;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 1024;
+    private static final int DEFAULT_JWT_EXPIRES_S = 3600;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikiAuth.class);
+
+    private final JDBCClient client;
+    private final AuthenticationProvider authentication;
+    private final JWTAuth jwt;
+    private final long cacheTtl;
+    private final int tokenExpiry;
+    private final byte[] digestKey = new byte[32];
+    private final Map<String, Credential> credentials;
+    private final Counter hits;
+    private final Counter misses;
+    // the last permissions loaded, or the first load while it is under way
+    private volatile Future<Map<String, JsonArray>> permissions;
+
+    private WikiAuth(Vertx vertx, JsonObject config) {
+        client = client(vertx, config);
+        authentication = authentication(vertx, client);
+
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(digestKey);
+        String secret = config.getString(HttpServerVerticle.CONFIG_HTTP_AUTH_JWT_SECRET);
+        if (secret == null) {
+            // tokens then only outlive the process that issued them
+            byte[] generated = new byte[32];
+            random.nextBytes(generated);
+            secret = Base64.getEncoder().encodeToString(generated);
+        }
+        jwt = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addPubSecKey(new PubSecKeyOptions().setAlgorithm("HS256").setBuffer(secret)));
+        tokenExpiry = config.getInteger(HttpServerVerticle.CONFIG_HTTP_AUTH_JWT_EXPIRES, DEFAULT_JWT_EXPIRES_S);
+
+        cacheTtl = config.getLong(HttpServerVerticle.CONFIG_HTTP_AUTH_CACHE_TTL, DEFAULT_CACHE_TTL_S) * 1000;
+        int maxEntries = config.getInteger(HttpServerVerticle.CONFIG_HTTP_AUTH_CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_ENTRIES);
+        credentials = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Credential> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        MetricsRegistry metrics = MetricsRegistry.get(vertx);
+        hits = metrics.counter("auth_credential_cache_hits_total", "Credentials verified from the cache");
+        misses = metrics.counter("auth_credential_cache_misses_total", "Credentials verified against the database");
+        metrics.gauge("auth_credential_cache_entries", "Verified credentials held in the cache", () -> {
+            synchronized (credentials) {
+                return credentials.size();
+            }
+        });
+
+        vertx.eventBus().consumer(CHANGED_ADDRESS, message -> refresh());
+        refresh();
+    }
+
+    /**
+     * The instance shared by every verticle of the given Vert.x instance. The configuration of the
+     * first caller is the one used.
+     */
+    static WikiAuth get(Vertx vertx, JsonObject config) {
+        LocalMap<String, WikiAuth> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        WikiAuth auth = map.get(LOCAL_MAP);
+        if (auth == null) {
+            synchronized (WikiAuth.class) {
+                auth = map.get(LOCAL_MAP);
+                if (auth == null) {
+                    auth = new WikiAuth(vertx, config);
+                    map.put(LOCAL_MAP, auth);
+                }
+            }
+        }
+        return auth;
+    }
+
+    /**
+     * A client of the pool of connections to the users database, which is shared by every caller
+     * within the given Vert.x instance and closed once they have all closed their client.
+     */
+    static JDBCClient client(Vertx vertx, JsonObject config) {
+        return JDBCClient.createShared(vertx, new JsonObject()
+                .put("url", config.getString(CONFIG_WIKIDB_JDBC_URL, DEFAULT_WIKIDB_JDBC_URL))
+                .put("driver_class", config.getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, DEFAULT_WIKIDB_JDBC_DRIVER_CLASS))
+                .put("max_pool_size", config.getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, DEFAULT_JDBC_MAX_POOL_SIZE)),
+                DATA_SOURCE_NAME);
+    }
+
+    // the seeded users have salted SHA-512 hex digests, which only the legacy hash strategy reads
+    @SuppressWarnings("deprecation")
+    private static AuthenticationProvider authentication(Vertx vertx, JDBCClient client) {
+        return JDBCAuthentication.create(client, JDBCHashStrategy.createSHA512(vertx), new JDBCAuthenticationOptions());
+    }
+
+    JWTAuth jwt() {
+        return jwt;
+    }
+
+    /**
+     * Verifies a password, completing with the permissions of the user.
+     */
+    Future<JsonArray> authenticate(String username, String password) {
+        if (username == null || password == null) {
+            return Future.failedFuture("Invalid username/password");
+        }
+        byte[] digest = digest(username, password);
+        long now = System.currentTimeMillis();
+        synchronized (credentials) {
+            Credential credential = credentials.get(username);
+            if (credential != null && credential.expires > now && MessageDigest.isEqual(credential.digest, digest)) {
+                hits.increment();
+                return permissionsOf(username);
+            }
+        }
+        misses.increment();
+        return authentication.authenticate(new UsernamePasswordCredentials(username, password)).compose(user -> {
+            synchronized (credentials) {
+                credentials.put(username, new Credential(digest, now + cacheTtl));
+            }
+            return permissionsOf(username);
+        });
+    }
+
+    /**
+     * Issues a token for an authenticated user, valid until it expires even if the permissions
+     * of the user change in the meantime.
+     */
+    String token(String username, JsonArray permissions) {
+        return jwt.generateToken(new JsonObject().put(PERMISSIONS_CLAIM, permissions),
+                new JWTOptions().setSubject(username).setExpiresInSeconds(tokenExpiry));
+    }
+
+    private Future<JsonArray> permissionsOf(String username) {
+        return permissions.map(byUser -> {
+            JsonArray granted = byUser.get(username);
+            return granted != null ? granted.copy() : new JsonArray();
+        });
+    }
+
+    private void refresh() {
+        Promise<ResultSet> roles = Promise.promise();
+        Promise<ResultSet> perms = Promise.promise();
+        client.query("select username, role from user_roles", roles);
+        client.query("select role, perm from roles_perms", perms);
+        Future<Map<String, JsonArray>> loading = CompositeFuture.all(roles.future(), perms.future()).map(done -> {
+            Map<String, Set<String>> byRole = new HashMap<>();
+            for (JsonArray row : perms.future().result().getResults()) {
+                byRole.computeIfAbsent(row.getString(0), role -> new TreeSet<>()).add(row.getString(1));
+            }
+            Map<String, Set<String>> byUser = new HashMap<>();
+            for (JsonArray row : roles.future().result().getResults()) {
+                Set<String> granted = byUser.computeIfAbsent(row.getString(0), user -> new TreeSet<>());
+                granted.add("role:" + row.getString(1));
+                granted.addAll(byRole.getOrDefault(row.getString(1), Set.of()));
+            }
+            Map<String, JsonArray> resolved = new HashMap<>();
+            byUser.forEach((user, granted) -> resolved.put(user, new JsonArray(new ArrayList<>(granted))));
+            return resolved;
+        });
+        if (permissions == null) {
+            permissions = loading;
+        }
+        loading.onSuccess(resolved -> {
+            permissions = loading;
+            synchronized (credentials) {
+                credentials.clear();
+            }
+        }).onFailure(t -> {
+            // the tables may not be seeded yet, in which case a change notification follows
+            LOGGER.warn("Could not load user permissions", t);
+        });
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(digestKey);
+            sha256.update(username.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            return sha256.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Credential {
+        final byte[] digest;
+        final long expires;
+
+        Credential(byte[] digest, long expires) {
+            this.digest = digest;
+            this.expires = expires;
+        }
+    }
+}
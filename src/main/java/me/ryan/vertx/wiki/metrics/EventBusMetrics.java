@@ -0,0 +1,91 @@
+package me.ryan.vertx.wiki.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryContext;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event-bus interceptors measuring, for one service address, the number of requests sent but not
+ * yet dispatched to a consumer and the round-trip time until the reply is dispatched back. The
+ * interceptors stay installed until {@link #uninstall()} is called, which the verticle serving
+ * the address does when it stops.
+ */
+public final class EventBusMetrics {
+
+    private static final long STALE_REQUEST_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Vertx vertx;
+    private final String address;
+    private final AtomicLong queued = new AtomicLong();
+    private final Map<String, Long> pendingReplies = new ConcurrentHashMap<>();
+    private final Histogram roundTrip;
+    private final Handler<DeliveryContext<Object>> outbound = this::outbound;
+    private final Handler<DeliveryContext<Object>> inbound = this::inbound;
+    private long staleRequestsTimer;
+
+    private EventBusMetrics(Vertx vertx, String address, MetricsRegistry metrics) {
+        this.vertx = vertx;
+        this.address = address;
+        this.roundTrip = metrics.histogram("eventbus_request_round_trip_seconds",
+                "Time from sending a request to the dispatch of its reply", "address", address);
+        metrics.gauge("eventbus_queue_depth", "Requests sent but not yet dispatched to a consumer",
+                queued::get, "address", address);
+        metrics.gauge("eventbus_pending_replies", "Requests waiting for a reply",
+                pendingReplies::size, "address", address);
+    }
+
+    public static EventBusMetrics install(Vertx vertx, String address, MetricsRegistry metrics) {
+        EventBusMetrics eventBusMetrics = new EventBusMetrics(vertx, address, metrics);
+        vertx.eventBus().addOutboundInterceptor(eventBusMetrics.outbound);
+        vertx.eventBus().addInboundInterceptor(eventBusMetrics.inbound);
+        eventBusMetrics.staleRequestsTimer = vertx.setPeriodic(TimeUnit.NANOSECONDS.toMillis(STALE_REQUEST_NANOS),
+                id -> eventBusMetrics.dropStaleRequests());
+        return eventBusMetrics;
+    }
+
+    public void uninstall() {
+        vertx.eventBus().removeOutboundInterceptor(outbound);
+        vertx.eventBus().removeInboundInterceptor(inbound);
+        vertx.cancelTimer(staleRequestsTimer);
+    }
+
+    private void outbound(DeliveryContext<Object> context) {
+        if (address.equals(context.message().address())) {
+            queued.incrementAndGet();
+            String replyAddress = context.message().replyAddress();
+            if (replyAddress != null) {
+                pendingReplies.put(replyAddress, System.nanoTime());
+            }
+        }
+        context.next();
+    }
+
+    private void inbound(DeliveryContext<Object> context) {
+        String target = context.message().address();
+        if (address.equals(target)) {
+            queued.decrementAndGet();
+        } else if (!pendingReplies.isEmpty()) {
+            Long sentAt = pendingReplies.remove(target);
+            if (sentAt != null) {
+                roundTrip.recordSince(sentAt);
+            }
+        }
+        context.next();
+    }
+
+    private void dropStaleRequests() {
+        long now = System.nanoTime();
+        Iterator<Long> iterator = pendingReplies.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next() > STALE_REQUEST_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+}
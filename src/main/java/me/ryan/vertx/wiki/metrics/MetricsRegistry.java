@@ -0,0 +1,131 @@
+package me.ryan.vertx.wiki.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms, exported in the Prometheus
+ * text format. Metrics are looked up once and then updated without locking.
+ */
+public class MetricsRegistry implements Shareable {
+
+    private static final String LOCAL_MAP = "wiki.metrics";
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * The registry shared by every verticle of the given Vert.x instance.
+     */
+    public static MetricsRegistry get(Vertx vertx) {
+        LocalMap<String, MetricsRegistry> map = vertx.sharedData().getLocalMap(LOCAL_MAP);
+        MetricsRegistry registry = map.get(LOCAL_MAP);
+        if (registry == null) {
+            MetricsRegistry created = new MetricsRegistry();
+            registry = map.putIfAbsent(LOCAL_MAP, created);
+            if (registry == null) {
+                registry = created;
+            }
+        }
+        return registry;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").metrics.computeIfAbsent(labels(labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").metrics.computeIfAbsent(labels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge sampled at scrape time, replacing any gauge with the same name and labels.
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, help, "gauge").metrics.put(labels(labels), supplier);
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                String labels = metric.getKey();
+                Object value = metric.getValue();
+                if (value instanceof Counter) {
+                    sample(out, name, labels, ((Counter) value).sum());
+                } else if (value instanceof DoubleSupplier) {
+                    sample(out, name, labels, ((DoubleSupplier) value).getAsDouble());
+                } else if (value instanceof Histogram) {
+                    Histogram histogram = (Histogram) value;
+                    long[] counts = histogram.cumulativeCounts();
+                    for (int i = 0; i < counts.length; i++) {
+                        String le = i < Histogram.BUCKETS_SECONDS.length ? Double.toString(Histogram.BUCKETS_SECONDS[i]) : "+Inf";
+                        String bucketLabels = labels.isEmpty() ? "le=\"" + le + "\"" : labels + ",le=\"" + le + "\"";
+                        sample(out, name + "_bucket", bucketLabels, counts[i]);
+                    }
+                    sample(out, name + "_sum", labels, histogram.sumSeconds());
+                    sample(out, name + "_count", labels, counts[counts.length - 1]);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -1,5 +1,43 @@
 "use strict";
 
+// Single [start, deleteCount, text] edit spanning the change between two texts.
+function textDiff(before, after) {
+  var prefix = 0;
+  var max = Math.min(before.length, after.length);
+  while (prefix < max && before.charAt(prefix) === after.charAt(prefix)) {
+    prefix++;
+  }
+  var suffix = 0;
+  while (
+    suffix < max - prefix &&
+    before.charAt(before.length - 1 - suffix) ===
+      after.charAt(after.length - 1 - suffix)
+  ) {
+    suffix++;
+  }
+  if (prefix + suffix >= before.length && prefix + suffix >= after.length) {
+    return [];
+  }
+  return [
+    [
+      prefix,
+      before.length - prefix - suffix,
+      after.substring(prefix, after.length - suffix),
+    ],
+  ];
+}
+
+// Applies ascending, non-overlapping [start, deleteCount, text] edits.
+function applyEdits(text, edits) {
+  var result = "";
+  var position = 0;
+  edits.forEach(function (edit) {
+    result += text.substring(position, edit[0]) + edit[2];
+    position = edit[0] + edit[1];
+  });
+  return result + text.substring(position);
+}
+
 function generateUUID() {
   var d = new Date().getTime();
   return "xxxxxxxx-xxxx-4xxx-yxxx-xxxxxxxxxxxx".replace(/[xy]/g, function (c) {
@@ -16,8 +54,14 @@ angular.module("wikiApp", []).controller("WikiController", [
   function ($scope, $http, $timeout) {
     var DEFAULT_PAGENAME = "Example page";
     var DEFAULT_MARKDOWN = "# Example page\n\nSome text _here_.\n";
+    // event-bus address of the displayed page's updates
+    var watchedAddress = null;
+    var clientUuid = generateUUID();
+    // lets the server route this tab's reads so that it sees its own saves
+    $http.defaults.headers.common["X-Wiki-Client"] = clientUuid;
 
     $scope.newPage = function () {
+      watchPage(undefined);
       $scope.pageId = undefined;
       $scope.pageName = DEFAULT_PAGENAME;
       $scope.pageMarkdown = DEFAULT_MARKDOWN;
@@ -40,7 +84,11 @@ angular.module("wikiApp", []).controller("WikiController", [
         $scope.pageId = page.id;
         $scope.pageName = page.name;
         $scope.pageMarkdown = page.markdown;
+        $scope.pageVersion = page.version;
+        $scope.savedMarkdown = page.markdown;
+        renderedMarkdown = page.markdown;
         $scope.updateRendering(page.html);
+        watchPage(page.id);
       });
     };
 
@@ -69,15 +117,21 @@ angular.module("wikiApp", []).controller("WikiController", [
           }
         );
       } else {
+        var markdown = $scope.pageMarkdown;
         payload = {
-          client: clientUuid,
-          markdown: $scope.pageMarkdown,
+          baseRevision: $scope.pageVersion,
+          edits: textDiff($scope.savedMarkdown, markdown),
         };
-        $http.put("/api/pages/" + $scope.pageId, payload).then(
+        $http.patch("/api/pages/" + $scope.pageId, payload).then(
           function (ok) {
+            $scope.pageVersion = ok.data.version;
+            $scope.savedMarkdown = markdown;
             $scope.success("Page saved");
           },
           function (err) {
+            if (err.status === 409) {
+              $scope.pageModified = true;
+            }
             $scope.error(err.data.error);
           }
         );
@@ -123,19 +177,21 @@ angular.module("wikiApp", []).controller("WikiController", [
     $scope.newPage();
 
     var makrdownRenderingPromise = null;
+    // markdown whose rendering is already displayed, so it is not rendered again
+    var renderedMarkdown = null;
     $scope.$watch("pageMarkdown", function (text) {
-      if (eb.state !== EventBus.OPEN) return;
+      if (eb.state !== EventBus.OPEN || text === renderedMarkdown) return;
       if (makrdownRenderingPromise !== null) {
         $timeout.cancel(makrdownRenderingPromise);
       }
       makrdownRenderingPromise = $timeout(function () {
         makrdownRenderingPromise = null;
-        eb.send("app.markdown", text, function (err, reply) {
+        eb.send("app.markdown", text, { client: clientUuid }, function (err, reply) {
           if (err == null) {
             $scope.$apply(function () {
               $scope.updateRendering(reply.body);
             });
-          } else {
+          } else if (err.failureCode !== 409) {
             console.warn(
               "Error rendering Markdown content: " + JSON.stringify(err)
             );
@@ -148,19 +204,59 @@ angular.module("wikiApp", []).controller("WikiController", [
       window.location.protocol + "//" + window.location.host + "/eventbus"
     );
 
-    var clientUuid = generateUUID();
-    eb.onopen = function () {
-      eb.registerHandler("page.saved", function (err, message) {
-        if (
-          message.body &&
-          $scope.pageId === message.body.id &&
-          clientUuid !== message.body.client
-        ) {
-          $scope.$apply(function () {
+    // Changes to the displayed page are pushed to "page.<id>" with their rendering, and applied
+    // in place unless they conflict with unsaved local edits.
+    function onPageUpdate(err, message) {
+      var update = message && message.body;
+      if (!update || update.id !== $scope.pageId || update.client === clientUuid) {
+        return;
+      }
+      $scope.$apply(function () {
+        if (update.deleted) {
+          $scope.pageModified = true;
+          return;
+        }
+        if (update.version <= $scope.pageVersion) {
+          return;
+        }
+        var markdown = update.markdown;
+        if (update.edits !== undefined) {
+          if (update.baseVersion !== $scope.pageVersion) {
             $scope.pageModified = true;
-          });
+            return;
+          }
+          markdown = applyEdits($scope.savedMarkdown, update.edits);
+        }
+        if ($scope.pageMarkdown !== $scope.savedMarkdown) {
+          $scope.pageModified = true;
+          return;
         }
+        $scope.pageMarkdown = markdown;
+        $scope.savedMarkdown = markdown;
+        $scope.pageVersion = update.version;
+        renderedMarkdown = markdown;
+        $scope.updateRendering(update.html);
       });
+    }
+
+    function watchPage(id) {
+      var address = id === undefined ? null : "page." + id;
+      if (address === watchedAddress) {
+        return;
+      }
+      if (watchedAddress !== null && eb.state === EventBus.OPEN) {
+        eb.unregisterHandler(watchedAddress, onPageUpdate);
+      }
+      watchedAddress = address;
+      if (address !== null && eb.state === EventBus.OPEN) {
+        eb.registerHandler(address, onPageUpdate);
+      }
+    }
+
+    eb.onopen = function () {
+      if (watchedAddress !== null) {
+        eb.registerHandler(watchedAddress, onPageUpdate);
+      }
     };
   },
 ]);
@@ -0,0 +1,56 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LocalJsonCodecTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void prepare() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void requests_and_replies_are_passed_by_reference(TestContext context) {
+        context.assertTrue(LocalJsonCodec.register(vertx));
+        context.assertTrue(LocalJsonCodec.register(vertx));
+
+        JsonObject request = new JsonObject().put("content", "large page");
+        JsonArray reply = new JsonArray().add(request);
+        vertx.eventBus().<JsonObject>consumer("codec.test", message -> {
+            context.assertTrue(message.body() == request);
+            LocalJsonCodec.replyingByReference(message).reply(reply);
+        });
+
+        DeliveryOptions options = new DeliveryOptions().setCodecName(LocalJsonCodec.NAME);
+        vertx.eventBus().<JsonArray>request("codec.test", request, options, context.asyncAssertSuccess(message ->
+                context.assertTrue(message.body() == reply)));
+    }
+
+    @Test
+    public void failures_are_still_delivered(TestContext context) {
+        LocalJsonCodec.register(vertx);
+        vertx.eventBus().<JsonObject>consumer("codec.test", message ->
+                LocalJsonCodec.replyingByReference(message).fail(404, "missing"));
+
+        DeliveryOptions options = new DeliveryOptions().setCodecName(LocalJsonCodec.NAME);
+        vertx.eventBus().request("codec.test", new JsonObject(), options, context.asyncAssertFailure(t ->
+                context.assertEquals("missing", t.getMessage())));
+    }
+}
@@ -0,0 +1,35 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PageContentTest {
+
+    private final PageContent codec = new PageContent();
+
+    @Test
+    public void repetitive_content_is_deflated() {
+        String markdown = String.join("\n", Collections.nCopies(100, "# Heading with _émphasis_ ✓"));
+        Buffer packed = codec.compress(markdown);
+        assertTrue(packed.length() < markdown.length() / 10);
+        assertEquals(markdown, codec.decompress(packed));
+    }
+
+    @Test
+    public void short_content_is_stored_as_it_is() {
+        Buffer packed = codec.compress("Hi ✓");
+        assertEquals(5 + "Hi ✓".getBytes(java.nio.charset.StandardCharsets.UTF_8).length, packed.length());
+        assertEquals("Hi ✓", codec.decompress(packed));
+        assertEquals("", codec.decompress(codec.compress("")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejects_truncated_content() {
+        Buffer packed = codec.compress(String.join("\n", Collections.nCopies(100, "some text")));
+        codec.decompress(packed.getBuffer(0, packed.length() / 2));
+    }
+}
@@ -0,0 +1,120 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.jdbcclient.JDBCPool;
+import io.vertx.sqlclient.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+/**
+ * Uses a second in-memory HSQLDB database as a stand-in read replica. Nothing replicates the
+ * primary to it, so which database served a read shows in the content read.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ReadReplicaTest {
+
+    private static final String REPLICA_URL = "jdbc:hsqldb:mem:replica;shutdown=true";
+
+    private Vertx vertx;
+    private JDBCPool replica;
+    private WikiDatabaseService anonymous;
+
+    @Before
+    public void prepare(TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        Properties queries = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/db-queries.properties")) {
+            queries.load(in);
+        }
+
+        replica = JDBCPool.pool(vertx, new JsonObject().put("url", REPLICA_URL).put("max_pool_size", 1));
+        Async schema = context.async();
+        replica.query(queries.getProperty("create-pages-table")).execute()
+                .compose(v -> replica.query(queries.getProperty("add-pages-version")).execute())
+                .compose(v -> replica.query(queries.getProperty("add-pages-updated-at")).execute())
+                .compose(v -> replica.query(queries.getProperty("add-pages-compressed-content")).execute())
+                .compose(v -> replica.preparedQuery(queries.getProperty("create-page")).execute(Tuple.of("Home", "replica copy", null)))
+                .onComplete(context.asyncAssertSuccess(v -> schema.complete()));
+        schema.awaitSuccess(5000L);
+
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:primary;shutdown=true")
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(CONFIG_WIKIDB_JDBC_REPLICA_URLS, new JsonArray().add(REPLICA_URL))
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_READ_YOUR_WRITES_MS, 60_000);
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id ->
+                        anonymous = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE)));
+    }
+
+    // a proxy per request, since proxies share the headers of their delivery options between requests
+    private WikiDatabaseService writer() {
+        return me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE,
+                new DeliveryOptions().addHeader(WikiDatabaseVerticle.CLIENT_HEADER, "writer"));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        replica.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void clients_read_their_own_writes_from_the_primary(TestContext context) {
+        Async async = context.async();
+
+        anonymous.rxCreatePage("Home", "primary copy")
+                .andThen(anonymous.rxFetchPageById(0))
+                .flatMap(page -> {
+                    context.assertEquals("replica copy", page.getString("content"));
+                    return writer().rxSavePage(0, "saved by writer").andThen(writer().rxFetchPageById(0));
+                })
+                .flatMap(page -> {
+                    context.assertEquals("saved by writer", page.getString("content"));
+                    return anonymous.rxFetchPageById(0);
+                })
+                .subscribe(page -> {
+                    context.assertEquals("replica copy", page.getString("content"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void indexed_reads_stay_on_the_primary(TestContext context) {
+        Async async = context.async();
+
+        anonymous.rxCreatePage("Primary only", "text")
+                .andThen(anonymous.rxFetchAllPages())
+                .flatMap(names -> {
+                    context.assertEquals(new JsonArray().add("Primary only"), names);
+                    return anonymous.rxFetchPageSummaries(-1, 10);
+                })
+                .subscribe(summaries -> {
+                    // listings go with the listing version, which only the primary knows
+                    context.assertEquals(1, summaries.size());
+                    context.assertEquals("Primary only", summaries.getJsonObject(0).getString("name"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+}
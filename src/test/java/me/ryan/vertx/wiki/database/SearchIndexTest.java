@@ -0,0 +1,58 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    @Test
+    public void ranks_more_relevant_pages_first() {
+        SearchIndex index = new SearchIndex();
+        index.index(1, "Vert.x", "Vert.x is a toolkit for reactive applications on the JVM");
+        index.index(2, "Reactive", "Reactive streams, reactive systems and reactive programming");
+        index.index(3, "Cooking", "How to cook pasta");
+
+        JsonArray results = index.search("reactive", 10);
+
+        assertEquals(2, results.size());
+        assertEquals(2, (int) results.getJsonObject(0).getInteger("id"));
+        assertEquals(1, (int) results.getJsonObject(1).getInteger("id"));
+        assertTrue(index.search("the", 10).isEmpty());
+    }
+
+    @Test
+    public void reindexing_and_removal_update_results() {
+        SearchIndex index = new SearchIndex();
+        index.index(1, "Page", "old words");
+        index.index(1, "Page", "new words");
+        index.index(2, "Other", "more words");
+
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(1, index.search("new", 10).size());
+
+        index.remove(2);
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("words", 10).size());
+    }
+
+    @Test
+    public void compaction_keeps_live_documents() {
+        SearchIndex index = new SearchIndex();
+        for (int id = 0; id < 5000; id++) {
+            index.index(id, "Page " + id, "common text " + (id % 2 == 0 ? "even" : "odd"));
+        }
+        for (int id = 0; id < 5000; id += 2) {
+            index.remove(id);
+        }
+        for (int id = 1; id < 5000; id += 4) {
+            index.remove(id);
+        }
+
+        assertEquals(1250, index.size());
+        assertTrue(index.search("even", 10).isEmpty());
+        assertEquals(1250, index.search("odd", 2000).size());
+        assertEquals(3, (int) index.search("page 3", 1).getJsonObject(0).getInteger("id"));
+    }
+}
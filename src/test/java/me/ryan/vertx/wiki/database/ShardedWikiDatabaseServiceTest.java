@@ -0,0 +1,123 @@
+package me.ryan.vertx.wiki.database;
+
+import io.reactivex.Flowable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+@RunWith(VertxUnitRunner.class)
+public class ShardedWikiDatabaseServiceTest {
+
+    private static final int SHARDS = 3;
+    private static final List<String> NAMES = Arrays.asList("Alpha", "Bravo", "Charlie", "Delta", "Echo", "Foxtrot", "Golf");
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        Async deployed = context.async(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            JsonObject conf = new JsonObject()
+                    .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:sharded;shutdown=true")
+                    .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                    .put(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARDS, SHARDS)
+                    .put(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARD, shard);
+            vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                    context.asyncAssertSuccess(id -> deployed.countDown()));
+        }
+        deployed.awaitSuccess(5000L);
+        service = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE,
+                SHARDS, new DeliveryOptions());
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void pages_are_found_on_their_shard_and_listed_across_shards(TestContext context) {
+        Async async = context.async();
+
+        Flowable.fromIterable(NAMES)
+                .concatMapCompletable(name -> service.rxCreatePage(name, "# " + name))
+                .andThen(Flowable.fromIterable(NAMES).concatMapSingle(name -> service.rxFetchPage(name)).toList())
+                .flatMap(pages -> {
+                    for (int i = 0; i < NAMES.size(); i++) {
+                        int id = pages.get(i).getInteger("id");
+                        context.assertEquals(ShardedWikiDatabaseService.shardOf(NAMES.get(i), SHARDS), id % SHARDS);
+                        context.assertEquals("# " + NAMES.get(i), pages.get(i).getString("rawContent"));
+                    }
+                    return service.rxFetchAllPages();
+                })
+                .flatMap(names -> {
+                    context.assertEquals(new JsonArray(NAMES), names);
+                    return service.rxFetchPageSummaries(-1, 4);
+                })
+                .flatMap(first -> {
+                    context.assertEquals(4, first.size());
+                    int last = first.getJsonObject(3).getInteger("id");
+                    return service.rxFetchPageSummaries(last, 4).map(rest -> first.copy().addAll(rest));
+                })
+                .flatMap(summaries -> {
+                    context.assertEquals(NAMES.size(), summaries.size());
+                    for (int i = 1; i < summaries.size(); i++) {
+                        context.assertTrue(summaries.getJsonObject(i - 1).getInteger("id") < summaries.getJsonObject(i).getInteger("id"));
+                    }
+                    int id = summaries.getJsonObject(0).getInteger("id");
+                    return service.rxSavePage(id, "saved").andThen(service.rxFetchPageById(id));
+                })
+                .subscribe(page -> {
+                    context.assertEquals("saved", page.getString("content"));
+                    context.assertEquals(1, page.getInteger("version"));
+                    async.complete();
+                }, context::fail);
+    }
+
+    @Test
+    public void batch_results_keep_the_order_of_the_batch(TestContext context) {
+        Async async = context.async();
+        List<JsonObject> batch = Arrays.asList(
+                new JsonObject().put("name", "Alpha").put("markdown", "a"),
+                new JsonObject().put("name", "Bravo").put("markdown", "b"),
+                new JsonObject().put("markdown", "no name"),
+                new JsonObject().put("name", "Charlie").put("markdown", "c"),
+                new JsonObject().put("name", "Alpha").put("markdown", "a2"));
+
+        service.rxCreatePage("Charlie", "old")
+                .andThen(service.rxBatchUpsertPages(batch))
+                .flatMap(results -> {
+                    context.assertEquals(batch.size(), results.size());
+                    String[] statuses = {"skipped", "created", "invalid", "updated", "created"};
+                    for (int i = 0; i < statuses.length; i++) {
+                        context.assertEquals(i, results.getJsonObject(i).getInteger("index"));
+                        context.assertEquals(statuses[i], results.getJsonObject(i).getString("status"));
+                    }
+                    return service.rxSearchPageNames("", 10);
+                })
+                .subscribe(matches -> {
+                    context.assertEquals(3, matches.size());
+                    context.assertEquals("Alpha", matches.getJsonObject(0).getString("name"));
+                    context.assertEquals("Charlie", matches.getJsonObject(2).getString("name"));
+                    async.complete();
+                }, context::fail);
+    }
+}
@@ -0,0 +1,40 @@
+package me.ryan.vertx.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextPatchTest {
+
+    @Test
+    public void diff_round_trips() {
+        String before = "# Title\n\nSome text here.\n";
+        String after = "# Title\n\nSome other text here!\n";
+        JsonArray edits = TextPatch.diff(before, after);
+        assertEquals(1, edits.size());
+        assertEquals(after, TextPatch.apply(before, edits));
+        assertTrue(TextPatch.diff(before, before).isEmpty());
+    }
+
+    @Test
+    public void applies_several_edits() {
+        JsonArray edits = new JsonArray()
+                .add(new JsonArray().add(0).add(1).add("J"))
+                .add(new JsonArray().add(5).add(0).add(" big"))
+                .add(new JsonArray().add(11).add(5).add(""));
+        assertEquals("Jello big world", TextPatch.apply("hello world!!!!!", edits));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_overlapping_edits() {
+        TextPatch.apply("hello world", new JsonArray()
+                .add(new JsonArray().add(2).add(4).add("x"))
+                .add(new JsonArray().add(3).add(1).add("y")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_edits_past_the_end() {
+        TextPatch.apply("short", new JsonArray().add(new JsonArray().add(3).add(10).add("x")));
+    }
+}
@@ -2,6 +2,7 @@ package me.ryan.vertx.wiki.database;
 
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -11,7 +12,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.reactivex.Flowable;
+import io.vertx.jdbcclient.JDBCPool;
+import io.vertx.reactivex.sqlclient.Pool;
+import io.vertx.reactivex.sqlclient.Row;
 import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
 
 import static me.ryan.vertx.wiki.DatabaseConstants.*;
 
@@ -20,6 +31,7 @@ public class WikiDatabaseServiceTest {
 
     private Vertx vertx;
     private WikiDatabaseService service;
+    private String deploymentId;
 
     @Before
     public void prepare(TestContext context) throws InterruptedException {
@@ -31,6 +43,7 @@ public class WikiDatabaseServiceTest {
 
         vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
                 context.asyncAssertSuccess(id -> {
+                    deploymentId = id;
                     service = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
                 }));
     }
@@ -71,4 +84,366 @@ public class WikiDatabaseServiceTest {
 
         async.awaitSuccess(5000L);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void page_summaries_use_keyset_pagination(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("A", "a")
+                .andThen(service.rxCreatePage("B", "b"))
+                .andThen(service.rxCreatePage("C", "c"))
+                .andThen(service.rxFetchPageSummaries(-1, 2))
+                .flatMap(first -> {
+                    context.assertEquals(2, first.size());
+                    context.assertEquals("A", first.getJsonObject(0).getString("name"));
+                    context.assertFalse(first.getJsonObject(0).containsKey("content"));
+                    int lastId = first.getJsonObject(1).getInteger("id");
+                    return service.rxFetchPageSummaries(lastId, 2);
+                })
+                .subscribe(second -> {
+                    context.assertEquals(1, second.size());
+                    context.assertEquals("C", second.getJsonObject(0).getString("name"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void page_names_are_served_sorted_and_by_prefix(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("beta", "b")
+                .andThen(service.rxCreatePage("Alpha", "a"))
+                .andThen(service.rxCreatePage("alphabet", "c"))
+                .andThen(service.rxFetchAllPages())
+                .flatMap(names -> {
+                    context.assertEquals(new JsonArray().add("Alpha").add("alphabet").add("beta"), names);
+                    return service.rxSearchPageNames("ALP", 10);
+                })
+                .flatMap(matches -> {
+                    context.assertEquals(2, matches.size());
+                    context.assertEquals("Alpha", matches.getJsonObject(0).getString("name"));
+                    return service.rxDeletePage(matches.getJsonObject(0).getInteger("id"))
+                            .andThen(service.rxSearchPageNames("alp", 10));
+                })
+                .subscribe(matches -> {
+                    context.assertEquals(1, matches.size());
+                    context.assertEquals("alphabet", matches.getJsonObject(0).getString("name"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void pages_are_searchable_by_content(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("Rivers", "The Danube flows through Vienna")
+                .andThen(service.rxCreatePage("Cities", "Vienna is a city"))
+                .andThen(service.rxFetchPage("Rivers"))
+                .flatMap(page -> service.rxSavePage(page.getInteger("id"), "The Rhine flows through Basel")
+                        .andThen(service.rxSearchPages("vienna", 10)))
+                .flatMap(results -> {
+                    context.assertEquals(1, results.size());
+                    context.assertEquals("Cities", results.getJsonObject(0).getString("name"));
+                    return service.rxSearchPages("rhine", 10);
+                })
+                .subscribe(results -> {
+                    context.assertEquals(1, results.size());
+                    context.assertEquals("Rivers", results.getJsonObject(0).getString("name"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void batch_upsert_creates_and_updates_by_name(TestContext context) {
+        Async async = context.async();
+
+        List<JsonObject> pages = Arrays.asList(
+                new JsonObject().put("name", "Existing").put("markdown", "updated"),
+                new JsonObject().put("name", "New").put("markdown", "first"),
+                new JsonObject().put("name", "Broken"),
+                new JsonObject().put("name", "New").put("markdown", "second"),
+                new JsonObject().put("name", "Other").put("markdown", "also updated"));
+
+        service.rxCreatePage("Existing", "original")
+                .andThen(service.rxCreatePage("Other", "original"))
+                .andThen(service.rxBatchUpsertPages(pages))
+                .flatMap(results -> {
+                    context.assertEquals(5, results.size());
+                    context.assertEquals("updated", results.getJsonObject(4).getString("status"));
+                    context.assertEquals("updated", results.getJsonObject(0).getString("status"));
+                    context.assertEquals("invalid", results.getJsonObject(2).getString("status"));
+                    context.assertEquals("skipped", results.getJsonObject(1).getString("status"));
+                    context.assertEquals("created", results.getJsonObject(3).getString("status"));
+                    return service.rxFetchPage("New");
+                })
+                .flatMap(page -> {
+                    context.assertEquals("second", page.getString("rawContent"));
+                    return service.rxFetchPage("Existing");
+                })
+                .flatMap(page -> {
+                    context.assertEquals("updated", page.getString("rawContent"));
+                    return service.rxSearchPages("second", 10);
+                })
+                .subscribe(results -> {
+                    context.assertEquals(1, results.size());
+                    context.assertEquals("New", results.getJsonObject(0).getString("name"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void saves_bump_page_and_listing_versions(TestContext context) {
+        Async async = context.async();
+
+        service.rxFetchListingVersion()
+                .flatMap(listingVersion -> service.rxCreatePage("Versioned", "v0")
+                        .andThen(service.rxFetchListingVersion())
+                        .map(next -> {
+                            context.assertNotEquals(listingVersion, next);
+                            return next;
+                        }))
+                .flatMap(v -> service.rxFetchPage("Versioned"))
+                .flatMap(page -> service.rxSavePage(page.getInteger("id"), "v1")
+                        .andThen(service.rxFetchPageById(page.getInteger("id"))))
+                .flatMap(page -> {
+                    context.assertEquals(1, page.getInteger("version"));
+                    context.assertNotNull(page.getLong("updatedAt"));
+                    return service.rxFetchPageVersion(page.getInteger("id"));
+                })
+                .flatMap(version -> {
+                    context.assertTrue(version.getBoolean("found"));
+                    context.assertEquals(1, version.getInteger("version"));
+                    return service.rxFetchPageVersion(4242);
+                })
+                .subscribe(version -> {
+                    context.assertFalse(version.getBoolean("found"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void patches_record_revisions(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("History", "line one\n")
+                .andThen(service.rxFetchPage("History"))
+                .flatMap(page -> {
+                    int id = page.getInteger("id");
+                    JsonArray edits = new JsonArray().add(new JsonArray().add(9).add(0).add("line two\n"));
+                    return service.rxPatchPage(id, 0, edits)
+                            .flatMap(result -> {
+                                context.assertEquals("patched", result.getString("status"));
+                                context.assertEquals(1, result.getInteger("version"));
+                                return service.rxPatchPage(id, 0, edits);
+                            })
+                            .flatMap(result -> {
+                                context.assertEquals("conflict", result.getString("status"));
+                                context.assertEquals(1, result.getInteger("version"));
+                                return service.rxSavePage(id, "line one\nline 2\n")
+                                        .andThen(service.rxFetchPageRevision(id, 1));
+                            })
+                            .flatMap(revision -> {
+                                context.assertEquals("line one\nline two\n", revision.getString("content"));
+                                return service.rxFetchPageRevision(id, 2);
+                            })
+                            .flatMap(revision -> {
+                                context.assertEquals("line one\nline 2\n", revision.getString("content"));
+                                return service.rxFetchPageRevision(id, 3);
+                            })
+                            .flatMap(revision -> {
+                                context.assertFalse(revision.getBoolean("found"));
+                                return service.rxFetchPageRevisions(id, 10);
+                            });
+                })
+                .subscribe(revisions -> {
+                    context.assertEquals(3, revisions.size());
+                    context.assertEquals(2, revisions.getJsonObject(0).getInteger("revision"));
+                    context.assertTrue(revisions.getJsonObject(2).getBoolean("snapshot"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void concurrent_saves_all_succeed(TestContext context) {
+        Async async = context.async();
+
+        // a second verticle on the same database, so that saves sent in turn to each of them race
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+        io.vertx.reactivex.core.Vertx.newInstance(vertx)
+                .rxDeployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf))
+                .flatMapCompletable(id -> service.rxCreatePage("Raced", "start"))
+                .andThen(service.rxFetchPage("Raced"))
+                .flatMap(page -> {
+                    int id = page.getInteger("id");
+                    return Flowable.range(1, 8)
+                            .flatMapCompletable(n -> service.rxSavePage(id, "save " + n))
+                            .andThen(service.rxFetchPageById(id))
+                            .flatMap(saved -> {
+                                // each verticle coalesces the saves it buffers, but both write theirs
+                                context.assertTrue(saved.getInteger("version") >= 2);
+                                context.assertTrue(saved.getString("content").startsWith("save "));
+                                return service.rxFetchPageRevisions(id, 10)
+                                        .map(revisions -> {
+                                            context.assertEquals(saved.getInteger("version") + 1, revisions.size());
+                                            context.assertEquals(saved.getInteger("version"),
+                                                    revisions.getJsonObject(0).getInteger("revision"));
+                                            return revisions;
+                                        });
+                            });
+                })
+                .subscribe(revisions -> async.complete(), context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void revisions_are_rebuilt_across_snapshots(TestContext context) {
+        Async async = context.async();
+
+        StringBuilder expected = new StringBuilder("start");
+        service.rxCreatePage("Long history", "start")
+                .andThen(service.rxFetchPage("Long history"))
+                .flatMap(page -> {
+                    int id = page.getInteger("id");
+                    io.reactivex.Completable edits = io.reactivex.Completable.complete();
+                    for (int i = 1; i <= 40; i++) {
+                        expected.append(" edit-").append(i);
+                        String markdown = expected.toString() + " padding padding padding padding padding";
+                        edits = edits.andThen(service.rxSavePage(id, markdown));
+                    }
+                    return edits.andThen(service.rxFetchPageRevision(id, 40));
+                })
+                .subscribe(revision -> {
+                    context.assertEquals(expected + " padding padding padding padding padding", revision.getString("content"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(10000L);
+    }
+
+    @Test
+    public void export_streams_acknowledged_batches(TestContext context) {
+        Async async = context.async();
+
+        JsonArray exported = new JsonArray();
+        int[] batches = {0};
+        vertx.eventBus().<JsonArray>consumer("test.export", message -> {
+            batches[0]++;
+            exported.addAll(message.body());
+            message.reply(null);
+        });
+
+        io.reactivex.Completable creates = io.reactivex.Completable.complete();
+        for (int i = 0; i < 5; i++) {
+            creates = creates.andThen(service.rxCreatePage("Page " + i, "Content " + i));
+        }
+        creates.andThen(service.rxExportPages("test.export", 2))
+                .subscribe(count -> {
+                    context.assertEquals(5, count);
+                    context.assertEquals(3, batches[0]);
+                    for (int i = 0; i < 5; i++) {
+                        context.assertEquals("Page " + i, exported.getJsonObject(i).getString("name"));
+                        context.assertEquals("Content " + i, exported.getJsonObject(i).getString("markdown"));
+                    }
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void repeated_queries_reuse_cached_statements(TestContext context) {
+        Async async = context.async();
+
+        long[] cached = new long[1];
+        service.rxCreatePage("Cached", "content")
+                .andThen(service.rxFetchPage("Cached"))
+                .flatMap(page -> {
+                    cached[0] = metric(MetricsRegistry.get(vertx).scrape(), "jdbc_statement_cache_statements");
+                    return Flowable.range(0, 20)
+                            .concatMapSingle(i -> service.rxFetchPageById(page.getInteger("id")))
+                            .count();
+                })
+                .subscribe(count -> {
+                    String scrape = MetricsRegistry.get(vertx).scrape();
+                    long statements = metric(scrape, "jdbc_statement_cache_statements");
+                    long connections = metric(scrape, "jdbc_statement_cache_connections");
+                    context.assertTrue(cached[0] > 0, "cached " + cached[0]);
+                    context.assertTrue(connections >= 1 && connections <= 4, "connections " + connections);
+                    // the query repeated 20 times is cached at most once per connection of the pool
+                    context.assertTrue(statements - cached[0] <= 4, "cached " + statements + " after " + cached[0]);
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void existing_pages_are_compressed_when_compression_is_enabled(TestContext context) {
+        Async async = context.async();
+
+        String markdown = String.join("\n", java.util.Collections.nCopies(200, "A line of _markdown_ repeated."));
+        // keeps the in-memory database open while the database verticle is redeployed
+        Pool sql = Pool.newInstance(JDBCPool.pool(vertx, new JsonObject()
+                .put("url", "jdbc:hsqldb:mem:testdb;shutdown=true")
+                .put("max_pool_size", 1)));
+        io.vertx.reactivex.core.Vertx rxVertx = io.vertx.reactivex.core.Vertx.newInstance(vertx);
+        JsonObject compressed = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_CONTENT_COMPRESSION, WikiDatabaseVerticle.CONTENT_COMPRESSION_DEFLATE);
+
+        service.rxCreatePage("Plain", markdown)
+                .andThen(sql.query("select count(*) from Pages").rxExecute())
+                .flatMapCompletable(rows -> rxVertx.rxUndeploy(deploymentId))
+                .andThen(rxVertx.rxDeployVerticle(WikiDatabaseVerticle.class.getName(), new io.vertx.core.DeploymentOptions().setConfig(compressed)))
+                .flatMapCompletable(id -> service.rxCreatePage("Compressed", markdown))
+                .andThen(sql.query("select content is null, octet_length(compressed_content) from Pages order by id").rxExecute())
+                .flatMap(rows -> {
+                    for (Row row : rows) {
+                        context.assertTrue(row.getBoolean(0));
+                        context.assertTrue(row.getInteger(1) < markdown.length() / 10, "stored " + row.getInteger(1) + " bytes");
+                    }
+                    return service.rxFetchPage("Plain");
+                })
+                .flatMap(plain -> {
+                    context.assertEquals(markdown, plain.getString("rawContent"));
+                    return service.rxFetchPage("Compressed");
+                })
+                .flatMap(page -> service.rxSavePage(page.getInteger("id"), markdown + "\nEdited.")
+                        .andThen(service.rxFetchPageRevision(page.getInteger("id"), 0))
+                        .flatMap(revision -> {
+                            context.assertEquals(markdown, revision.getString("content"));
+                            return service.rxFetchPageById(page.getInteger("id"));
+                        }))
+                .flatMap(page -> {
+                    context.assertEquals(markdown + "\nEdited.", page.getString("content"));
+                    return service.rxSearchPages("markdown", 10);
+                })
+                .subscribe(hits -> {
+                    context.assertEquals(2, hits.size());
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(10000L);
+    }
+
+    private static long metric(String scrape, String name) {
+        Matcher matcher = Pattern.compile("(?m)^" + name + "\\{pool=\"wikidb\"\\} (\\d+)").matcher(scrape);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
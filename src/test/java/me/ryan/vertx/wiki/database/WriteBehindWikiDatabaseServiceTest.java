@@ -0,0 +1,123 @@
+package me.ryan.vertx.wiki.database;
+
+import io.reactivex.Completable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+@RunWith(VertxUnitRunner.class)
+public class WriteBehindWikiDatabaseServiceTest {
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+    private final List<JsonObject> events = new ArrayList<>();
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:writebehind;shutdown=true")
+                .put(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_WRITE_BEHIND_MS, 200);
+
+        vertx.eventBus().<JsonObject>consumer(WriteBehindWikiDatabaseService.PAGE_SAVED_ADDRESS, message -> events.add(message.body()));
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id -> {
+                    service = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+                }));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void saves_within_the_window_are_coalesced(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("Busy", "v0")
+                .andThen(service.rxFetchPage("Busy"))
+                .flatMap(page -> {
+                    int id = page.getInteger("id");
+                    return Completable.merge(List.of(
+                                    service.rxSavePage(id, "v1"),
+                                    service.rxSavePage(id, "v2"),
+                                    service.rxSavePage(id, "v3")))
+                            .andThen(service.rxFetchPageById(id));
+                })
+                .subscribe(page -> {
+                    context.assertEquals("v3", page.getString("content"));
+                    context.assertEquals(1, page.getInteger("version"));
+                    context.assertEquals(1, events.size());
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void saves_are_announced_with_the_last_saver_for_existing_pages_only(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("Shared", "v0")
+                .andThen(service.rxFetchPage("Shared"))
+                .flatMapCompletable(page -> {
+                    int id = page.getInteger("id");
+                    return Completable.merge(List.of(
+                            savedBy("alice").rxSavePage(id, "v1"),
+                            savedBy("bob").rxSavePage(id, "v2"),
+                            service.rxSavePage(4242, "nowhere").onErrorComplete(t -> t instanceof ServiceException
+                                    && ((ServiceException) t).failureCode() == ErrorCodes.PAGE_NOT_FOUND.ordinal())));
+                })
+                .andThen(service.rxFetchPage("Shared"))
+                .subscribe(page -> {
+                    context.assertEquals(1, events.size());
+                    context.assertEquals("bob", events.get(0).getString("client"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    // the client is named by the headers of the request, as the HTTP verticle does
+    private WikiDatabaseService savedBy(String client) {
+        return me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE,
+                new DeliveryOptions().addHeader(WikiDatabaseVerticle.CLIENT_HEADER, client));
+    }
+
+    @Test
+    public void reads_wait_for_buffered_saves(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("Read", "before")
+                .andThen(service.rxFetchPage("Read"))
+                .flatMap(page -> {
+                    service.rxSavePage(page.getInteger("id"), "after").subscribe(() -> { }, context::fail);
+                    return service.rxFetchPageById(page.getInteger("id"));
+                })
+                .subscribe(page -> {
+                    context.assertEquals("after", page.getString("content"));
+                    async.complete();
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+}
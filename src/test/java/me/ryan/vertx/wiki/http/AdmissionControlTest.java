@@ -0,0 +1,94 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class AdmissionControlTest {
+
+    private Vertx vertx;
+    private WebClient client;
+    private final List<RoutingContext> held = new ArrayList<>();
+
+    private void serve(TestContext context, JsonObject config) {
+        vertx = Vertx.vertx();
+        AdmissionControl admission = AdmissionControl.get(vertx, config);
+        Router router = Router.router(vertx);
+        router.route("/api/*").handler(admission::handle);
+        router.get("/api/held").handler(held::add);
+        router.get("/api/pages").handler(routingContext -> routingContext.response().end("pages"));
+        Async listening = context.async();
+        vertx.createHttpServer().requestHandler(router).listen(0, context.asyncAssertSuccess(server -> {
+            client = WebClient.create(vertx, new WebClientOptions().setDefaultPort(server.actualPort()));
+            listening.complete();
+        }));
+        listening.awaitSuccess(5000L);
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void clients_over_their_rate_are_told_when_to_retry(TestContext context) {
+        serve(context, new JsonObject()
+                .put(HttpServerVerticle.CONFIG_HTTP_API_RATE_LIMIT, 0.5)
+                .put(HttpServerVerticle.CONFIG_HTTP_API_RATE_LIMIT_BURST, 2));
+        Async async = context.async();
+
+        client.get("/api/pages").send()
+                .compose(first -> {
+                    context.assertEquals(200, first.statusCode());
+                    return client.get("/api/pages").send();
+                })
+                .compose(second -> {
+                    context.assertEquals(200, second.statusCode());
+                    return client.get("/api/pages").send();
+                })
+                .onComplete(context.asyncAssertSuccess(third -> {
+                    context.assertEquals(429, third.statusCode());
+                    context.assertEquals("2", third.getHeader("Retry-After"));
+                    context.assertFalse(third.bodyAsJsonObject().getBoolean("success"));
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void requests_over_the_in_flight_cap_fail_fast(TestContext context) {
+        serve(context, new JsonObject().put(HttpServerVerticle.CONFIG_HTTP_API_MAX_IN_FLIGHT, 1));
+        Async async = context.async(2);
+
+        client.get("/api/held").send(context.asyncAssertSuccess(response -> {
+            context.assertEquals(200, response.statusCode());
+            client.get("/api/pages").send(context.asyncAssertSuccess(after -> {
+                context.assertEquals(200, after.statusCode());
+                async.countDown();
+            }));
+        }));
+        vertx.setPeriodic(10, timer -> {
+            if (!held.isEmpty()) {
+                vertx.cancelTimer(timer);
+                client.get("/api/pages").send(context.asyncAssertSuccess(overloaded -> {
+                    context.assertEquals(503, overloaded.statusCode());
+                    context.assertEquals("1", overloaded.getHeader("Retry-After"));
+                    held.get(0).response().end();
+                    async.countDown();
+                }));
+            }
+        });
+    }
+}
@@ -1,18 +1,25 @@
 package me.ryan.vertx.wiki.http;
 
-import io.vertx.core.Future;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
 @RunWith(VertxUnitRunner.class)
 public class HttpServerVerticleTest {
 
@@ -46,9 +53,61 @@ public class HttpServerVerticleTest {
                             context.assertEquals("Ok", response.body().toString());
                             async.complete();
                         } else {
-                            async.handler(Future.failedFuture(ar.cause()));
+                            context.fail(ar.cause());
                         }
                     });
                 }));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void startTlsServerWithHttp2(TestContext context) {
+        Async async = context.async();
+
+        JsonObject conf = new JsonObject()
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, 8443)
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_SSL, true);
+        vertx.deployVerticle(new HttpServerVerticle(), new DeploymentOptions().setConfig(conf), context.asyncAssertSuccess(id -> {
+            WebClient webClient = WebClient.create(vertx, new WebClientOptions()
+                    .setSsl(true)
+                    .setTrustAll(true)
+                    .setVerifyHost(false)
+                    .setUseAlpn(true)
+                    .setProtocolVersion(HttpVersion.HTTP_2));
+
+            webClient.get(8443, "localhost", "/app/index.html").send(context.asyncAssertSuccess(response -> {
+                context.assertEquals(HttpVersion.HTTP_2, response.version());
+                context.assertEquals(200, response.statusCode());
+                context.assertTrue(response.bodyAsString().contains("<html"));
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void patches_are_announced_with_the_client_header(TestContext context) {
+        Async async = context.async();
+
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:httpserver;shutdown=true")
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, 8082);
+        DeploymentOptions options = new DeploymentOptions().setConfig(conf);
+        WebClient webClient = WebClient.create(vertx, new WebClientOptions().setDefaultPort(8082));
+        vertx.eventBus().<JsonObject>consumer("page.saved", message -> {
+            context.assertEquals("alice", message.body().getString("client"));
+            context.assertEquals(1, message.body().getInteger("version"));
+            async.complete();
+        });
+
+        vertx.deployVerticle(new WikiDatabaseVerticle(), options)
+                .compose(db -> vertx.deployVerticle(new HttpServerVerticle(), options))
+                .compose(http -> webClient.post("/api/pages")
+                        .sendJsonObject(new JsonObject().put("name", "Patched").put("markdown", "world")))
+                .compose(created -> webClient.get("/api/pages").send())
+                .compose(pages -> webClient.patch("/api/pages/" + pages.bodyAsJsonObject().getJsonArray("pages").getJsonObject(0).getInteger("id"))
+                        .putHeader("X-Wiki-Client", "alice")
+                        .sendJsonObject(new JsonObject()
+                                .put("baseRevision", 0)
+                                .put("edits", new JsonArray().add(new JsonArray().add(0).add(0).add("Hello ")))))
+                .onComplete(context.asyncAssertSuccess(patched -> context.assertEquals(200, patched.statusCode())));
+    }
+}
@@ -0,0 +1,62 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class MarkdownRenderVerticleTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        JsonObject conf = new JsonObject()
+                .put(MarkdownRenderVerticle.CONFIG_RENDER_POOL_SIZE, 1)
+                .put(MarkdownRenderVerticle.CONFIG_RENDER_QUEUE_SIZE, 2);
+        vertx.deployVerticle(new MarkdownRenderVerticle(), new DeploymentOptions().setConfig(conf), context.asyncAssertSuccess());
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void renders_markdown(TestContext context) {
+        vertx.eventBus().<String>request(MarkdownRenderVerticle.RENDER_ADDRESS, "# Hello", context.asyncAssertSuccess(reply ->
+                context.assertEquals("<h1>Hello</h1>\n", reply.body())));
+    }
+
+    @Test
+    public void queued_requests_from_the_same_client_are_coalesced(TestContext context) {
+        Async async = context.async(3);
+        DeliveryOptions options = new DeliveryOptions().addHeader(MarkdownRenderVerticle.CLIENT_HEADER, "client-1");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            large.append("Paragraph _number_ ").append(i).append("\n\n");
+        }
+
+        vertx.runOnContext(v -> {
+            vertx.eventBus().<String>request(MarkdownRenderVerticle.RENDER_ADDRESS, large.toString(), options, context.asyncAssertSuccess(reply -> async.countDown()));
+            vertx.eventBus().<String>request(MarkdownRenderVerticle.RENDER_ADDRESS, "second", options, context.asyncAssertFailure(t -> {
+                context.assertEquals(MarkdownRenderVerticle.SUPERSEDED, ((ReplyException) t).failureCode());
+                async.countDown();
+            }));
+            vertx.eventBus().<String>request(MarkdownRenderVerticle.RENDER_ADDRESS, "third", options, context.asyncAssertSuccess(reply -> {
+                context.assertEquals("<p>third</p>\n", reply.body());
+                async.countDown();
+            }));
+        });
+    }
+}
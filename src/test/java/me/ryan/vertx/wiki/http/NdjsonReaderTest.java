@@ -0,0 +1,65 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NdjsonReaderTest {
+
+    @Test
+    public void gzip_output_is_read_back_across_chunk_boundaries() {
+        GzipNdjsonWriter writer = new GzipNdjsonWriter();
+        Buffer compressed = Buffer.buffer();
+        for (int batch = 0; batch < 10; batch++) {
+            JsonArray pages = new JsonArray();
+            for (int i = 0; i < 10; i++) {
+                pages.add(new JsonObject().put("name", "Page " + (batch * 10 + i)).put("markdown", "line\nnext é"));
+            }
+            compressed.appendBuffer(writer.write(pages));
+        }
+        compressed.appendBuffer(writer.finish());
+
+        List<JsonObject> pages = new ArrayList<>();
+        NdjsonReader reader = new NdjsonReader(1024, pages::add);
+        for (int i = 0; i < compressed.length(); i += 7) {
+            reader.handle(compressed.slice(i, Math.min(compressed.length(), i + 7)));
+        }
+        reader.end();
+
+        assertEquals(100, pages.size());
+        assertEquals("Page 42", pages.get(42).getString("name"));
+        assertEquals("line\nnext é", pages.get(99).getString("markdown"));
+    }
+
+    @Test
+    public void plain_lines_are_split_and_bad_lines_reported() {
+        List<JsonObject> pages = new ArrayList<>();
+        NdjsonReader reader = new NdjsonReader(1024, pages::add);
+        reader.handle(Buffer.buffer("{\"name\":\"A\"}\r\n\n{not json}\n{\"na"));
+        reader.handle(Buffer.buffer("me\":\"B\"}"));
+        reader.end();
+
+        assertEquals(3, pages.size());
+        assertEquals("A", pages.get(0).getString("name"));
+        assertNull(pages.get(1));
+        assertEquals("B", pages.get(2).getString("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void long_lines_are_rejected() {
+        NdjsonReader reader = new NdjsonReader(16, page -> fail());
+        reader.handle(Buffer.buffer("{\"name\":\"a rather long name\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corrupt_gzip_is_rejected() {
+        NdjsonReader reader = new NdjsonReader(1024, page -> { });
+        reader.handle(Buffer.buffer(new byte[]{0x1f, (byte) 0x8b, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}));
+    }
+}
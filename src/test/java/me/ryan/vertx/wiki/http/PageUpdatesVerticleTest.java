@@ -0,0 +1,98 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+@RunWith(VertxUnitRunner.class)
+public class PageUpdatesVerticleTest {
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:pageupdates;shutdown=true");
+        Async deployed = context.async(3);
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf), context.asyncAssertSuccess(id -> {
+            deployed.countDown();
+            vertx.deployVerticle(new MarkdownRenderVerticle(), context.asyncAssertSuccess(v -> deployed.countDown()));
+            vertx.deployVerticle(new PageUpdatesVerticle(), context.asyncAssertSuccess(v -> deployed.countDown()));
+        }));
+        deployed.awaitSuccess(5000L);
+        service = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void watched_pages_receive_rendered_updates(TestContext context) {
+        Async async = context.async(2);
+        JsonArray edits = new JsonArray().add(new JsonArray().add(2).add(5).add("Later"));
+
+        service.rxCreatePage("Watched", "# Before")
+                .andThen(service.rxFetchPage("Watched"))
+                .subscribe(page -> {
+                    int id = page.getInteger("id");
+                    vertx.eventBus().<JsonObject>consumer(PageUpdatesVerticle.PAGE_ADDRESS_PREFIX + id, message -> {
+                        JsonObject update = message.body();
+                        if (update.getInteger("version") == 1) {
+                            context.assertEquals("# After", update.getString("markdown"));
+                            context.assertEquals("<h1>After</h1>\n", update.getString("html"));
+                            service.rxPatchPage(id, 1, edits)
+                                    .subscribe(result -> vertx.eventBus().publish("page.saved", new JsonObject()
+                                            .put("id", id)
+                                            .put("client", "writer")
+                                            .put("version", result.getInteger("version"))
+                                            .put("edits", edits)), context::fail);
+                        } else {
+                            context.assertEquals(2, update.getInteger("version"));
+                            context.assertEquals(1, update.getInteger("baseVersion"));
+                            context.assertEquals(edits, update.getJsonArray("edits"));
+                            context.assertEquals("writer", update.getString("client"));
+                            context.assertFalse(update.containsKey("markdown"));
+                            context.assertEquals("<h1>Later</h1>\n", update.getString("html"));
+                        }
+                        async.countDown();
+                    });
+                    vertx.eventBus().send(PageUpdatesVerticle.WATCHERS_ADDRESS, new JsonObject().put("id", id).put("delta", 1));
+                    // saving announces the page on page.saved by itself
+                    service.rxSavePage(id, "# After").subscribe(() -> { }, context::fail);
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+
+    @Test
+    public void unwatched_pages_are_not_pushed(TestContext context) {
+        Async async = context.async();
+
+        service.rxCreatePage("Quiet", "# Quiet")
+                .andThen(service.rxFetchPage("Quiet"))
+                .subscribe(page -> {
+                    int id = page.getInteger("id");
+                    vertx.eventBus().consumer(PageUpdatesVerticle.PAGE_ADDRESS_PREFIX + id, message -> context.fail("Unexpected update"));
+                    service.rxSavePage(id, "# Still quiet")
+                            .subscribe(() -> vertx.setTimer(200, timer -> async.complete()), context::fail);
+                }, context::fail);
+
+        async.awaitSuccess(5000L);
+    }
+}
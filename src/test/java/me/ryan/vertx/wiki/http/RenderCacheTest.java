@@ -0,0 +1,48 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderCacheTest {
+
+    @Test
+    public void hit_only_for_same_version() {
+        RenderCache cache = new RenderCache(1024);
+        cache.put(1, 3, "<h1>A</h1>");
+
+        assertEquals("<h1>A</h1>", cache.get(1, 3));
+        assertNull(cache.get(1, 4));
+        assertNull(cache.get(2, 3));
+
+        JsonObject stats = cache.stats();
+        assertEquals(1L, (long) stats.getLong("hits"));
+        assertEquals(2L, (long) stats.getLong("misses"));
+    }
+
+    @Test
+    public void evicts_least_recently_used_entries() {
+        RenderCache cache = new RenderCache(300);
+        cache.put(1, 0, "<p>one</p>");
+        cache.put(2, 0, "<p>two</p>");
+        cache.get(1, 0);
+        cache.put(3, 0, "<p>three</p>");
+        cache.put(4, 0, "<p>four</p>");
+
+        assertNotNull(cache.get(1, 0));
+        assertNull(cache.get(2, 0));
+        assertTrue(cache.stats().getLong("evictions") > 0);
+        assertTrue(cache.stats().getLong("weight") <= 300);
+    }
+
+    @Test
+    public void invalidate_removes_entry() {
+        RenderCache cache = new RenderCache(1024);
+        cache.put(1, 0, "<h1>A</h1>");
+        cache.invalidate(1);
+
+        assertNull(cache.get(1, 0));
+        assertEquals(0L, (long) cache.stats().getLong("weight"));
+    }
+}
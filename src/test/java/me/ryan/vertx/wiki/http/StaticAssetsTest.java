@@ -0,0 +1,103 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(VertxUnitRunner.class)
+public class StaticAssetsTest {
+
+    private static final String SCRIPT = "function wiki() {\n" + "    return 'wiki';\n".repeat(100) + "}\n";
+
+    private Vertx vertx;
+    private WebClient client;
+    private int port;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        Map<String, Buffer> files = new HashMap<>();
+        files.put("index.html", Buffer.buffer("<script src=\"/app/wiki.js\"></script>"));
+        files.put("wiki.js", Buffer.buffer(SCRIPT));
+        StaticAssets assets = new StaticAssets(files);
+
+        Router router = Router.router(vertx);
+        router.get("/app/*").handler(assets::handle);
+        vertx.createHttpServer().requestHandler(router).listen(0, context.asyncAssertSuccess(server -> port = server.actualPort()));
+        client = WebClient.create(vertx, new WebClientOptions().setTryUseCompression(false));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void pages_refer_to_immutable_hashed_assets(TestContext context) {
+        Async async = context.async();
+
+        client.get(port, "localhost", "/app/index.html").send(context.asyncAssertSuccess(page -> {
+            context.assertEquals("no-cache", page.getHeader("Cache-Control"));
+            Matcher script = Pattern.compile("/app/wiki\\.[0-9a-f]{12}\\.js").matcher(page.bodyAsString());
+            context.assertTrue(script.find());
+
+            client.get(port, "localhost", script.group())
+                    .putHeader("Accept-Encoding", "gzip, deflate")
+                    .send(context.asyncAssertSuccess(asset -> {
+                        context.assertEquals("public, max-age=31536000, immutable", asset.getHeader("Cache-Control"));
+                        context.assertEquals("gzip", asset.getHeader("Content-Encoding"));
+                        context.assertTrue(asset.body().length() < SCRIPT.length());
+                        context.assertEquals(SCRIPT, gunzip(asset.body()));
+
+                        client.get(port, "localhost", script.group())
+                                .putHeader("If-None-Match", asset.getHeader("ETag"))
+                                .send(context.asyncAssertSuccess(cached -> {
+                                    context.assertEquals(304, cached.statusCode());
+                                    async.complete();
+                                }));
+                    }));
+        }));
+    }
+
+    @Test
+    public void uncompressed_unless_accepted(TestContext context) {
+        Async async = context.async();
+
+        client.get(port, "localhost", "/app/wiki.js")
+                .putHeader("Accept-Encoding", "gzip;q=0")
+                .send(context.asyncAssertSuccess(asset -> {
+                    context.assertNull(asset.getHeader("Content-Encoding"));
+                    context.assertEquals("text/javascript;charset=utf-8", asset.getHeader("Content-Type"));
+                    context.assertEquals(SCRIPT, asset.bodyAsString());
+                    client.get(port, "localhost", "/app/missing.js").send(context.asyncAssertSuccess(missing -> {
+                        context.assertEquals(404, missing.statusCode());
+                        async.complete();
+                    }));
+                }));
+    }
+
+    private static String gunzip(Buffer compressed) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getBytes()))) {
+            return new String(in.readAllBytes());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
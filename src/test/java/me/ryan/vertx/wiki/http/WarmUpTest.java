@@ -0,0 +1,60 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.database.reactivex.WikiDatabaseService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+@RunWith(VertxUnitRunner.class)
+public class WarmUpTest {
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        JsonObject conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:warmup;shutdown=true");
+        Async deployed = context.async(2);
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id -> deployed.countDown()));
+        vertx.deployVerticle(new MarkdownRenderVerticle(), context.asyncAssertSuccess(id -> deployed.countDown()));
+        deployed.awaitSuccess(5000L);
+        service = me.ryan.vertx.wiki.database.WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void existing_pages_are_rendered_once_per_vertx_instance(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put(HttpServerVerticle.CONFIG_HTTP_WARMUP_PAGES, new JsonArray().add("Home").add("Missing"))
+                .put(HttpServerVerticle.CONFIG_HTTP_WARMUP_ROUNDS, 3);
+
+        service.rxCreatePage("Home", "# Home")
+                .subscribe(() -> WarmUp.pages(vertx, config, service.getDelegate()).onComplete(context.asyncAssertSuccess(pages -> {
+                    context.assertEquals(1, pages.size());
+                    context.assertEquals(0, pages.get(0).getInteger("version"));
+                    context.assertEquals("<h1>Home</h1>\n", pages.get(0).getString("html"));
+                    // later callers get the same warm-up, whatever their configuration
+                    context.assertTrue(WarmUp.pages(vertx, new JsonObject(), service.getDelegate()).result() == pages);
+                    async.complete();
+                })), context::fail);
+    }
+}
@@ -0,0 +1,101 @@
+package me.ryan.vertx.wiki.http;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import me.ryan.vertx.wiki.database.WikiDatabaseVerticle;
+import me.ryan.vertx.wiki.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static me.ryan.vertx.wiki.DatabaseConstants.*;
+
+@RunWith(VertxUnitRunner.class)
+public class WikiAuthTest {
+
+    private static final int PORT = 8081;
+
+    private Vertx vertx;
+    private JsonObject conf;
+    private WebClient webClient;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        conf = new JsonObject()
+                .put(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:wikiauth;shutdown=true")
+                .put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT)
+                .put(HttpServerVerticle.CONFIG_HTTP_AUTH, true);
+        DeploymentOptions options = new DeploymentOptions().setConfig(conf);
+
+        Async deployed = context.async();
+        vertx.deployVerticle(new WikiDatabaseVerticle(), options, context.asyncAssertSuccess(db ->
+                vertx.deployVerticle(new AuthInitializerVerticle(), options, context.asyncAssertSuccess(users ->
+                        vertx.deployVerticle(new HttpServerVerticle(), options, context.asyncAssertSuccess(http -> deployed.complete()))))));
+        deployed.awaitSuccess(5000L);
+        webClient = WebClient.create(vertx, new WebClientOptions().setDefaultPort(PORT));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void api_writes_need_a_token_granting_the_permission(TestContext context) {
+        Async async = context.async();
+        JsonObject page = new JsonObject().put("name", "Secured").put("markdown", "# Secured");
+
+        webClient.post("/api/pages").sendJsonObject(page)
+                .compose(anonymous -> {
+                    context.assertEquals(401, anonymous.statusCode());
+                    context.assertFalse(anonymous.bodyAsJsonObject().getBoolean("success"));
+                    return webClient.get("/api/token").putHeader("login", "bar").putHeader("password", "baz").send();
+                })
+                .compose(writerToken -> webClient.post("/api/pages")
+                        .putHeader("Authorization", "Bearer " + writerToken.bodyAsString())
+                        .sendJsonObject(page))
+                .compose(writer -> {
+                    context.assertEquals(403, writer.statusCode());
+                    return webClient.get("/api/token").putHeader("login", "foo").putHeader("password", "bar").send();
+                })
+                .compose(editorToken -> webClient.post("/api/pages")
+                        .putHeader("Authorization", "Bearer " + editorToken.bodyAsString())
+                        .sendJsonObject(page))
+                .onComplete(context.asyncAssertSuccess(editor -> {
+                    context.assertEquals(201, editor.statusCode());
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void verified_credentials_are_cached(TestContext context) {
+        Async async = context.async();
+        WikiAuth auth = WikiAuth.get(vertx, conf);
+
+        auth.authenticate("root", "admin")
+                .compose(permissions -> {
+                    context.assertTrue(permissions.contains("role:admin"));
+                    context.assertTrue(permissions.contains("delete"));
+                    return auth.authenticate("root", "admin");
+                })
+                .compose(permissions -> auth.authenticate("root", "wrong").transform(wrong -> {
+                    context.assertTrue(wrong.failed());
+                    return Future.<Void>succeededFuture();
+                }))
+                .onComplete(context.asyncAssertSuccess(v -> {
+                    String scrape = MetricsRegistry.get(vertx).scrape();
+                    context.assertTrue(scrape.contains("auth_credential_cache_hits_total 1"), scrape);
+                    context.assertTrue(scrape.contains("auth_credential_cache_misses_total 2"), scrape);
+                    async.complete();
+                }));
+    }
+}
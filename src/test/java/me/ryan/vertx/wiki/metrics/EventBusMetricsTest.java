@@ -0,0 +1,46 @@
+package me.ryan.vertx.wiki.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class EventBusMetricsTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void prepare() {
+        vertx = Vertx.vertx();
+        vertx.eventBus().<String>consumer("echo", message -> message.reply(message.body()));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void uninstalled_metrics_stop_measuring(TestContext context) {
+        Async async = context.async();
+        MetricsRegistry metrics = new MetricsRegistry();
+        EventBusMetrics eventBusMetrics = EventBusMetrics.install(vertx, "echo", metrics);
+        String roundTrips = "eventbus_request_round_trip_seconds_count{address=\"echo\"} ";
+
+        vertx.eventBus().request("echo", "one")
+                .compose(reply -> {
+                    context.assertTrue(metrics.scrape().contains(roundTrips + "1\n"));
+                    eventBusMetrics.uninstall();
+                    return vertx.eventBus().request("echo", "two");
+                })
+                .onComplete(context.asyncAssertSuccess(reply -> {
+                    context.assertTrue(metrics.scrape().contains(roundTrips + "1\n"));
+                    async.complete();
+                }));
+    }
+}
@@ -0,0 +1,49 @@
+package me.ryan.vertx.wiki.metrics;
+
+import io.vertx.core.Vertx;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void scrape_renders_prometheus_text() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("requests_total", "Requests", "route", "/a").add(3);
+        metrics.gauge("queue_depth", "Depth", () -> 7);
+        Histogram latency = metrics.histogram("latency_seconds", "Latency", "route", "/a");
+        latency.record(TimeUnit.MICROSECONDS.toNanos(700));
+        latency.record(TimeUnit.SECONDS.toNanos(20));
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE requests_total counter\n"));
+        assertTrue(text.contains("requests_total{route=\"/a\"} 3\n"));
+        assertTrue(text.contains("queue_depth 7\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"5.0E-4\"} 0\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.001\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_count{route=\"/a\"} 2\n"));
+    }
+
+    @Test
+    public void same_name_and_labels_share_a_metric() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("hits_total", "Hits").increment();
+        metrics.counter("hits_total", "Hits").increment();
+        assertEquals(2, metrics.counter("hits_total", "Hits").sum());
+        assertEquals(0, metrics.counter("hits_total", "Hits", "cache", "other").sum());
+    }
+
+    @Test
+    public void registry_is_shared_per_vertx_instance() {
+        Vertx vertx = Vertx.vertx();
+        try {
+            assertSame(MetricsRegistry.get(vertx), MetricsRegistry.get(vertx));
+        } finally {
+            vertx.close();
+        }
+    }
+}